@@ -2,7 +2,9 @@ package ru.practicum.ewm.main.server;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
+@EnableScheduling
 @SpringBootApplication
 public class EwmMainServer {
     public static void main(String[] args) {
@@ -1,23 +1,37 @@
 package ru.practicum.ewm.main.server.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import ru.practicum.statistics.client.StatisticsClient;
+import ru.practicum.statistics.client.StatisticsClientProperties;
+
+import java.util.List;
 
 @Configuration
 public class BeanStatClientConfig {
-    private final String serverUrl;
+    private final List<String> serverUrls;
     private final String appName;
 
-    public BeanStatClientConfig(@Value("${statistics.server.address}") String serverUrl,
+    /**
+     * @param serverUrls comma-separated statistics nodes; uris are spread over them by consistent hashing
+     */
+    public BeanStatClientConfig(@Value("${statistics.server.address}") List<String> serverUrls,
                                 @Value("${application.name}") String appName) {
-        this.serverUrl = serverUrl;
+        this.serverUrls = serverUrls;
         this.appName = appName;
     }
 
     @Bean
-    public StatisticsClient createStatisticClient() {
-        return new StatisticsClient(serverUrl, appName);
+    @ConfigurationProperties(prefix = "statistics.client")
+    public StatisticsClientProperties statisticsClientProperties() {
+        return new StatisticsClientProperties();
+    }
+
+    @Bean
+    public StatisticsClient createStatisticClient(StatisticsClientProperties properties, MeterRegistry meterRegistry) {
+        return new StatisticsClient(serverUrls, appName, properties, meterRegistry);
     }
 }
@@ -76,6 +76,14 @@ public class Event {
     @Column(name = "participant_limit")
     private Long participantLimit;
 
+    /**
+     * Number of confirmed requests, kept by the request status changes themselves.
+     * Never written on flush, so that a stale entity cannot overwrite increments of concurrent transactions.
+     */
+    @Builder.Default
+    @Column(name = "confirmed_requests", nullable = false, updatable = false)
+    private Long confirmedRequests = 0L;
+
     @Column(name = "published_date")
     private LocalDateTime publishedOn;
 
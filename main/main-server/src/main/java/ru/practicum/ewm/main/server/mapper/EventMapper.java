@@ -15,6 +15,7 @@ import ru.practicum.ewm.main.server.entity.User;
 public interface EventMapper {
 
     @Mapping(target = "id", ignore = true)
+    @Mapping(target = "confirmedRequests", ignore = true)
     @Mapping(source = "category", target = "category")
     Event toEvent(NewEventDto newEventDto, Category category, User initiator);
 
@@ -9,7 +9,6 @@ import ru.practicum.ewm.main.application.request.ParticipationRequestDto;
 import ru.practicum.ewm.main.application.request.RequestStatus;
 import ru.practicum.ewm.main.server.entity.Request;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -21,14 +20,11 @@ public interface RequestMapper {
     @Mapping(target = "created", source = "request.createDate")
     ParticipationRequestDto toParticipationRequestDto(Request request);
 
-    default RequestStatusUpdateResult toRequestStatusUpdateResult(List<Request> requests) {
-        if (requests == null) {
+    default RequestStatusUpdateResult toRequestStatusUpdateResult(
+            List<ParticipationRequestDto> participationRequestDtos) {
+        if (participationRequestDtos == null) {
             return null;
         }
-        List<ParticipationRequestDto> participationRequestDtos = requests
-                .stream()
-                .map(this::toParticipationRequestDto)
-                .collect(Collectors.toCollection(ArrayList<ParticipationRequestDto>::new));
 
         List<ParticipationRequestDto> confirmedRequests = participationRequestDtos
                 .stream()
@@ -1,8 +1,52 @@
 package ru.practicum.ewm.main.server.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.querydsl.QuerydslPredicateExecutor;
+import org.springframework.data.repository.query.Param;
 import ru.practicum.ewm.main.server.entity.Event;
 
+import javax.persistence.LockModeType;
+import java.util.List;
+import java.util.Optional;
+
 public interface EventRepository extends JpaRepository<Event, Long>, QuerydslPredicateExecutor<Event> {
+
+    /**
+     * Reads the event under a row lock, so that its confirmed count stays current until the transaction ends.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select e from Event e where e.id = :eventId")
+    Optional<Event> findByIdForUpdate(@Param("eventId") Long eventId);
+
+    @Modifying
+    @Query("update Event e set e.confirmedRequests = e.confirmedRequests + :delta where e.id = :eventId")
+    int addConfirmedRequests(@Param("eventId") Long eventId, @Param("delta") long delta);
+
+    /**
+     * Takes the places only if they are all still free; returns 0 otherwise. Concurrent callers are
+     * serialized on the event row and each one checks the limit against the committed count.
+     */
+    @Modifying
+    @Query("update Event e set e.confirmedRequests = e.confirmedRequests + :seats "
+            + "where e.id = :eventId "
+            + "and (e.participantLimit = 0 or e.confirmedRequests + :seats <= e.participantLimit)")
+    int reserveSeats(@Param("eventId") Long eventId, @Param("seats") long seats);
+
+    @Query(value = "SELECT e.id FROM event e "
+            + "LEFT JOIN request r ON r.event_id = e.id AND r.status = 'CONFIRMED' "
+            + "GROUP BY e.id "
+            + "HAVING e.confirmed_requests <> COUNT(r.id)", nativeQuery = true)
+    List<Long> findConfirmedRequestsDrift();
+
+    @Query(value = "SELECT id FROM event WHERE id IN (:ids) ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Long> lockAllById(@Param("ids") List<Long> ids);
+
+    @Modifying
+    @Query(value = "UPDATE event e SET confirmed_requests = "
+            + "(SELECT COUNT(*) FROM request r WHERE r.event_id = e.id AND r.status = 'CONFIRMED') "
+            + "WHERE e.id IN (:ids)", nativeQuery = true)
+    int recountConfirmedRequests(@Param("ids") List<Long> ids);
 }
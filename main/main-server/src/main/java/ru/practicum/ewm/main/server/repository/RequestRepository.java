@@ -1,8 +1,38 @@
 package ru.practicum.ewm.main.server.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.querydsl.QuerydslPredicateExecutor;
+import org.springframework.data.repository.query.Param;
+import ru.practicum.ewm.main.application.request.ParticipationRequestDto;
+import ru.practicum.ewm.main.application.request.RequestStatus;
 import ru.practicum.ewm.main.server.entity.Request;
 
-public interface RequestRepository extends JpaRepository<Request, Long>, QuerydslPredicateExecutor<Request> {
+import java.util.List;
+
+public interface RequestRepository extends JpaRepository<Request, Long>,
+        QuerydslPredicateExecutor<Request>,
+        RequestRepositoryCustom {
+
+    @Query("select new ru.practicum.ewm.main.application.request.ParticipationRequestDto("
+            + "r.id, r.requester.id, r.event.id, r.status, r.createDate) "
+            + "from Request r where r.event.id = :eventId and r.id in :ids order by r.id")
+    List<ParticipationRequestDto> findAllDtoByEventIdAndIdIn(@Param("eventId") Long eventId,
+                                                              @Param("ids") List<Long> ids);
+
+    @Modifying
+    @Query("update Request r set r.status = :status where r.id in :ids and r.status = :expected")
+    int updateStatus(@Param("ids") List<Long> ids,
+                     @Param("expected") RequestStatus expected,
+                     @Param("status") RequestStatus status);
+
+    /**
+     * Sets the status unless the request currently has the excluded one; returns 0 when it does.
+     */
+    @Modifying
+    @Query("update Request r set r.status = :status where r.id = :id and r.status <> :excluded")
+    int updateStatusUnless(@Param("id") Long id,
+                           @Param("excluded") RequestStatus excluded,
+                           @Param("status") RequestStatus status);
 }
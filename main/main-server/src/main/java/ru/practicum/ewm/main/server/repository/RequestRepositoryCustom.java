@@ -0,0 +1,17 @@
+package ru.practicum.ewm.main.server.repository;
+
+import ru.practicum.ewm.main.application.request.ParticipationRequestDto;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface RequestRepositoryCustom {
+
+    /**
+     * Inserts the request in one statement if the user and the event exist, the event is published, is not the
+     * user's own, still has free places and the user has no request for it yet. A request that needs no
+     * moderation is inserted as CONFIRMED; its place is not reserved here.
+     * Returns empty if any of the conditions does not hold.
+     */
+    Optional<ParticipationRequestDto> admit(long eventId, long userId, LocalDateTime created);
+}
@@ -0,0 +1,46 @@
+package ru.practicum.ewm.main.server.repository;
+
+import lombok.RequiredArgsConstructor;
+import ru.practicum.ewm.main.application.request.ParticipationRequestDto;
+import ru.practicum.ewm.main.application.request.RequestStatus;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@RequiredArgsConstructor
+public class RequestRepositoryImpl implements RequestRepositoryCustom {
+    private static final String ADMIT_SQL = "INSERT INTO request (event_id, requester_id, create_date, status) "
+            + "SELECT e.id, u.id, :created, "
+            + "CASE WHEN NOT e.request_moderation OR e.participant_limit = 0 THEN 'CONFIRMED' ELSE 'PENDING' END "
+            + "FROM event e, users u "
+            + "WHERE e.id = :eventId AND u.id = :userId "
+            + "AND e.state = 'PUBLISHED' "
+            + "AND e.initiator_id <> u.id "
+            + "AND (e.participant_limit = 0 OR e.confirmed_requests < e.participant_limit) "
+            + "ON CONFLICT (event_id, requester_id) DO NOTHING "
+            + "RETURNING id, status";
+
+    private final EntityManager entityManager;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Optional<ParticipationRequestDto> admit(long eventId, long userId, LocalDateTime created) {
+        List<Object[]> rows = entityManager.createNativeQuery(ADMIT_SQL)
+                .setParameter("eventId", eventId)
+                .setParameter("userId", userId)
+                .setParameter("created", created)
+                .getResultList();
+
+        return rows.stream()
+                .findFirst()
+                .map(row -> ParticipationRequestDto.builder()
+                        .id(((Number) row[0]).longValue())
+                        .requester(userId)
+                        .event(eventId)
+                        .status(RequestStatus.valueOf((String) row[1]))
+                        .created(created)
+                        .build());
+    }
+}
@@ -0,0 +1,37 @@
+package ru.practicum.ewm.main.server.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewm.main.server.repository.EventRepository;
+
+import java.util.List;
+
+/**
+ * Repairs events whose confirmed_requests column no longer matches the confirmed rows of request.
+ * Drifted events are locked before they are counted again, so a request confirmed concurrently is either
+ * committed and counted, or adds itself to the repaired value once the lock is released.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConfirmedRequestReconciler {
+    private final EventRepository eventRepository;
+
+    @Transactional
+    @Scheduled(fixedDelayString = "${events.confirmed-requests.reconcile-interval:600000}")
+    public void reconcile() {
+        List<Long> drifted = eventRepository.findConfirmedRequestsDrift();
+
+        if (drifted.isEmpty()) {
+            return;
+        }
+
+        eventRepository.lockAllById(drifted);
+        int repaired = eventRepository.recountConfirmedRequests(drifted);
+
+        log.warn("Confirmed requests drifted for {} events, recounted {}: {}", drifted.size(), repaired, drifted);
+    }
+}
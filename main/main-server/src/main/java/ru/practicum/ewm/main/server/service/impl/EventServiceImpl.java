@@ -1,14 +1,13 @@
 package ru.practicum.ewm.main.server.service.impl;
 
 import com.querydsl.core.BooleanBuilder;
-import com.querydsl.jpa.JPAExpressions;
-import com.querydsl.jpa.impl.JPAQueryFactory;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.ewm.main.application.event.*;
+import ru.practicum.ewm.main.application.request.ParticipationRequestDto;
 import ru.practicum.ewm.main.application.request.RequestStatus;
 import ru.practicum.ewm.main.server.entity.*;
 import ru.practicum.ewm.main.server.mapper.EventMapper;
@@ -24,23 +23,21 @@ import ru.practicum.ewm.main.server.service.EventService;
 import ru.practicum.ewm.main.util.exception.AlreadyExistedException;
 import ru.practicum.ewm.main.util.exception.NotFoundException;
 import ru.practicum.statistics.client.StatisticsClient;
-import ru.practicum.statistics.dto.ResponseHitDto;
 import ru.practicum.util.pageable.OffsetBasedPageRequest;
 
-import javax.persistence.EntityManager;
 import javax.servlet.http.HttpServletRequest;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
-import static com.querydsl.core.group.GroupBy.groupBy;
 import static ru.practicum.util.constant.Constants.SORT_BY_ID_ASC;
 
 @Service
 @RequiredArgsConstructor
 @Transactional(readOnly = true)
 public class EventServiceImpl implements EventService {
+    private static final String EVENT_ENTITY = "event";
+
     private final EventRepository eventRepository;
     private final UserRepository userRepository;
     private final CategoryRepository categoryRepository;
@@ -49,7 +46,7 @@ public class EventServiceImpl implements EventService {
     private final LocationMapper locationMapper;
     private final RequestMapper requestMapper;
     private final StatisticsClient statisticsClient;
-    private final EntityManager entityManager;
+    private final EventViewCache eventViewCache;
 
     @Override
     @Transactional
@@ -71,10 +68,7 @@ public class EventServiceImpl implements EventService {
         Event event = getEventById(eventId);
 
         if (event.getInitiator().getId().equals(userId)) {
-            EventFullDto dto = eventMapper.toEventFullDto(event);
-            dto.setConfirmedRequests(getConfirmedRequests(eventId));
-
-            return dto;
+            return eventMapper.toEventFullDto(event);
         }
 
         throw new NotFoundException("События с id = " + eventId + " не существует");
@@ -89,15 +83,11 @@ public class EventServiceImpl implements EventService {
 
         Pageable pageable = new OffsetBasedPageRequest(from, size, SORT_BY_ID_ASC);
 
-        List<EventShortDto> list = eventRepository.findAll(builder, pageable)
+        return eventRepository.findAll(builder, pageable)
                 .getContent()
                 .stream()
                 .map(eventMapper::toEventShortDto)
                 .collect(Collectors.toList());
-
-        setConfirmedRequest(list);
-
-        return list;
     }
 
     @Override
@@ -126,11 +116,7 @@ public class EventServiceImpl implements EventService {
             event.setState(EventStatus.PENDING);
         }
 
-        EventFullDto eventDto = eventMapper.toEventFullDto(eventRepository.save(event));
-
-        eventDto.setConfirmedRequests(getConfirmedRequests(eventId));
-
-        return eventDto;
+        return eventMapper.toEventFullDto(eventRepository.save(event));
     }
 
     @Override
@@ -174,11 +160,9 @@ public class EventServiceImpl implements EventService {
         if (!dtos.isEmpty()) {
             Map<Long, Long> views = getViews(dtos);
 
-            dtos.forEach(dto -> dto.setViews(views.get(dto.getId())));
+            dtos.forEach(dto -> dto.setViews(views.getOrDefault(dto.getId(), 0L)));
         }
 
-        setConfirmedRequest(dtos);
-
         return dtos;
     }
 
@@ -203,15 +187,11 @@ public class EventServiceImpl implements EventService {
 
         Pageable pageable = new OffsetBasedPageRequest(from, size, SORT_BY_ID_ASC);
 
-        List<EventFullDto> dtos = eventRepository.findAll(builder, pageable)
+        return eventRepository.findAll(builder, pageable)
                 .getContent()
                 .stream()
                 .map(eventMapper::toEventFullDto)
                 .collect(Collectors.toList());
-
-        setConfirmedRequest(dtos);
-
-        return dtos;
     }
 
     @Override
@@ -222,16 +202,13 @@ public class EventServiceImpl implements EventService {
             throw new NotFoundException("Событие с  id = " + eventId + " является публичным");
         }
 
-        statisticsClient.postHit(httpServletRequest);
+        statisticsClient.postHit(httpServletRequest, EVENT_ENTITY, eventId);
 
         EventFullDto dto = eventMapper.toEventFullDto(event);
-        dto.setViews((long) statisticsClient.getStats(event.getCreatedOn(),
-                        LocalDateTime.now(),
-                        List.of("/events/" + eventId),
-                        true)
-                .size());
-
-        dto.setConfirmedRequests(getConfirmedRequests(eventId));
+        dto.setViews(statisticsClient.getCount(httpServletRequest.getRequestURI(),
+                event.getCreatedOn(),
+                LocalDateTime.now(),
+                true));
 
         return dto;
     }
@@ -266,18 +243,17 @@ public class EventServiceImpl implements EventService {
             event.setState(EventStatus.CANCELED);
         }
 
-        EventFullDto eventDto = eventMapper.toEventFullDto(eventRepository.save(event));
-
-        eventDto.setConfirmedRequests(getConfirmedRequests(eventId));
-
-        return eventDto;
+        return eventMapper.toEventFullDto(eventRepository.save(event));
     }
 
     @Override
     @Transactional
     public RequestStatusUpdateResult updateRequestStatus(RequestStatusUpdateRequest dto, Long eventId, Long userId) {
         getUserById(userId);
-        Event event = getEventById(eventId);
+        // Locked, so that seats taken by requests admitted meanwhile are seen before the capacity is computed.
+        Event event = eventRepository.findByIdForUpdate(eventId).orElseThrow(
+                () -> new NotFoundException("Событие с id = " + eventId + " не существует")
+        );
         RequestStatus status = dto.getStatus();
 
         if (!event.getInitiator().getId().equals(userId)) {
@@ -290,47 +266,50 @@ public class EventServiceImpl implements EventService {
             throw new AlreadyExistedException("Событие не модерируется.");
         }
         if (status.equals(RequestStatus.CONFIRMED) &&
-                event.getParticipantLimit() - getConfirmedRequests(eventId) <= 0) {
+                event.getParticipantLimit() - event.getConfirmedRequests() <= 0) {
             throw new AlreadyExistedException("Количество заявок на участие в мероприятии достигло предела");
         }
 
-        BooleanBuilder builder = new BooleanBuilder();
-        builder.and(QRequest.request.id.in(dto.getRequestIds()));
-        builder.and(QRequest.request.event.id.eq(eventId));
+        List<ParticipationRequestDto> requests = requestRepository.findAllDtoByEventIdAndIdIn(eventId,
+                dto.getRequestIds());
 
-        List<Request> requests = StreamSupport
-                .stream(requestRepository.findAll(builder, SORT_BY_ID_ASC).spliterator(), false)
-                .collect(Collectors.toList());
+        for (ParticipationRequestDto r : requests) {
+            if (!r.getStatus().equals(RequestStatus.PENDING)) {
+                throw new AlreadyExistedException("Запрос с id = " + r.getId() + " не находится на рассмотрении");
+            }
+        }
 
-        switch (status) {
-            case CONFIRMED:
-                requests.forEach(r -> {
-                    if (!r.getStatus().equals(RequestStatus.PENDING)) {
-                        throw new AlreadyExistedException("Запрос с id = " + r.getId() + " не находится на рассмотрении");
-                    }
+        int confirmed = status.equals(RequestStatus.CONFIRMED)
+                ? (int) Math.min(requests.size(), event.getParticipantLimit() - event.getConfirmedRequests())
+                : 0;
 
-                    if (event.getParticipantLimit() - getConfirmedRequests(eventId) <= 0) {
-                        r.setStatus(RequestStatus.REJECTED);
-                    } else {
-                        r.setStatus(status);
-                    }
-                });
-                break;
-            case REJECTED:
-                requests.forEach(r -> {
-                    if (!r.getStatus().equals(RequestStatus.PENDING)) {
-                        throw new AlreadyExistedException("Запрос с id = " + r.getId() + " не находится на рассмотрении");
-                    }
-                    r.setStatus(status);
-                });
+        if (confirmed > 0 && eventRepository.reserveSeats(eventId, confirmed) == 0) {
+            throw new AlreadyExistedException("Количество заявок на участие в мероприятии достигло предела");
         }
 
-
-        eventRepository.save(event);
+        updateStatus(requests.subList(0, confirmed), RequestStatus.CONFIRMED);
+        updateStatus(requests.subList(confirmed, requests.size()), RequestStatus.REJECTED);
 
         return requestMapper.toRequestStatusUpdateResult(requests);
     }
 
+    /**
+     * Moves the requests out of PENDING with a single update; fails if any of them was changed meanwhile.
+     */
+    private void updateStatus(List<ParticipationRequestDto> requests, RequestStatus status) {
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        List<Long> ids = requests.stream().map(ParticipationRequestDto::getId).collect(Collectors.toList());
+
+        if (requestRepository.updateStatus(ids, RequestStatus.PENDING, status) != ids.size()) {
+            throw new AlreadyExistedException("Запросы с id = " + ids + " уже не находятся на рассмотрении");
+        }
+
+        requests.forEach(r -> r.setStatus(status));
+    }
+
     private User getUserById(long userId) {
         return userRepository.findById(userId).orElseThrow(
                 () -> new NotFoundException("Пользователя с id = " + userId + " не существует")
@@ -410,11 +389,8 @@ public class EventServiceImpl implements EventService {
         }
 
         if (onlyAvailable != null && onlyAvailable) {
-            builder.and(QEvent.event.participantLimit.subtract(JPAExpressions.select(QRequest.request.id.count())
-                    .from(QRequest.request)
-                    .where(QRequest.request.event.id.eq(QEvent.event.id)
-                            .and(QRequest.request.status.eq(RequestStatus.CONFIRMED)))
-            ).loe(1));
+            builder.and(qEvent.participantLimit.eq(0L)
+                    .or(qEvent.confirmedRequests.lt(qEvent.participantLimit)));
         }
 
         if (paid != null) {
@@ -433,70 +409,8 @@ public class EventServiceImpl implements EventService {
     }
 
     private Map<Long, Long> getViews(Collection<EventShortDto> dtos) {
-        List<String> uris = dtos.stream()
-                .map(dto -> "/events/" + dto.getId())
-                .collect(Collectors.toList());
-
-        List<Long> ids = dtos.stream()
+        return eventViewCache.getViews(dtos.stream()
                 .map(EventShortDto::getId)
-                .collect(Collectors.toList());
-
-        JPAQueryFactory query = new JPAQueryFactory(entityManager);
-        QEvent qEvent = QEvent.event;
-
-        Event event = query
-                .selectFrom(qEvent)
-                .where(qEvent.id.in(ids))
-                .orderBy(qEvent.createdOn.asc())
-                .fetchFirst();
-
-        LocalDateTime startTime = event.getCreatedOn();
-
-        List<ResponseHitDto> hits = statisticsClient.getStats(startTime,
-                LocalDateTime.now(),
-                uris,
-                true);
-
-        Map<Long, Long> views = new HashMap<>();
-
-        hits.forEach(hit -> {
-            String uri = hit.getUri();
-            String[] split = uri.split("/");
-            String id = split[2];
-            Long eventId = Long.parseLong(id);
-            views.put(eventId, hit.getHits());
-        });
-
-        return views;
-    }
-
-    private Long getConfirmedRequests(Long eventId) {
-        BooleanBuilder builder = new BooleanBuilder();
-        builder.and(QRequest.request.event.id.eq(eventId));
-        builder.and(QRequest.request.status.eq(RequestStatus.CONFIRMED));
-
-        return requestRepository.count(builder);
-    }
-
-    private void setConfirmedRequest(List<? extends EventBaseDto> list) {
-        List<Long> ids = list.stream().map(EventBaseDto::getId).collect(Collectors.toList());
-
-        BooleanBuilder builder = new BooleanBuilder();
-        builder.and(QRequest.request.event.id.in(ids));
-        builder.and(QRequest.request.status.eq(RequestStatus.CONFIRMED));
-
-        Map<Long, Long> confirmedRequestsByEventId;
-
-        confirmedRequestsByEventId = new JPAQueryFactory(entityManager)
-                .select(QRequest.request.event.id, QRequest.request.id.count())
-                .from(QRequest.request)
-                .where(builder)
-                .groupBy(QRequest.request.event.id)
-                .transform(groupBy(QRequest.request.event.id)
-                        .as(QRequest.request.id.count()));
-
-        list.forEach(t -> t.setConfirmedRequests(confirmedRequestsByEventId.get(t.getId()) == null
-                ? 0L
-                : confirmedRequestsByEventId.get(t.getId())));
+                .collect(Collectors.toList()));
     }
 }
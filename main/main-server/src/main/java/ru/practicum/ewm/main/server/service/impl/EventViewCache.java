@@ -0,0 +1,137 @@
+package ru.practicum.ewm.main.server.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.statistics.client.StatisticsClient;
+import ru.practicum.statistics.client.ViewCounts;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Event view counts together with the time they are counted up to, exclusive.
+ * Total counts are refreshed by adding the views recorded since then. Unique counts of two ranges
+ * cannot be added, so they are counted again over the whole history once they are older than uniqueRefreshAfter.
+ * Counts stop settleDelay before now, so that hits still buffered on their way to the statistics service are not missed.
+ * Hits can land later than that, e.g. deduplicated repeats, client retries or a journal backlog, and a delta never
+ * looks back at them, so total counts are also counted again over the whole history every totalRecountAfter.
+ */
+@Component
+public class EventViewCache {
+    private static final String EVENT_ENTITY = "event";
+
+    private final StatisticsClient statisticsClient;
+    private final Cache<Long, Entry> cache;
+    private final boolean unique;
+    private final Duration refreshAfter;
+    private final Duration uniqueRefreshAfter;
+    private final Duration totalRecountAfter;
+    private final Duration settleDelay;
+
+    public EventViewCache(StatisticsClient statisticsClient,
+                          @Value("${views.unique:true}") boolean unique,
+                          @Value("${views.cache.maximum-size:100000}") long maximumSize,
+                          @Value("${views.cache.expire-after-access:1h}") Duration expireAfterAccess,
+                          @Value("${views.cache.refresh-after:5s}") Duration refreshAfter,
+                          @Value("${views.cache.unique-refresh-after:1m}") Duration uniqueRefreshAfter,
+                          @Value("${views.cache.total-recount-after:10m}") Duration totalRecountAfter,
+                          @Value("${views.cache.settle-delay:2s}") Duration settleDelay) {
+        this.statisticsClient = statisticsClient;
+        this.unique = unique;
+        this.refreshAfter = refreshAfter;
+        this.uniqueRefreshAfter = uniqueRefreshAfter;
+        this.totalRecountAfter = totalRecountAfter;
+        this.settleDelay = settleDelay;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(expireAfterAccess)
+                .build();
+    }
+
+    public Map<Long, Long> getViews(Collection<Long> eventIds) {
+        LocalDateTime countedUpTo = LocalDateTime.now().minus(settleDelay).truncatedTo(ChronoUnit.SECONDS);
+        LocalDateTime refreshBefore = countedUpTo.minus(unique ? uniqueRefreshAfter : refreshAfter);
+        LocalDateTime recountBefore = countedUpTo.minus(unique ? uniqueRefreshAfter : totalRecountAfter);
+        Map<Long, Long> views = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        Map<LocalDateTime, List<Long>> stale = new HashMap<>();
+
+        for (Long eventId : eventIds) {
+            Entry entry = cache.getIfPresent(eventId);
+
+            if (entry == null || entry.getRecountedUpTo().isBefore(recountBefore)) {
+                missing.add(eventId);
+            } else {
+                views.put(eventId, entry.getCount());
+
+                if (entry.getCountedUpTo().isBefore(refreshBefore)) {
+                    stale.computeIfAbsent(entry.getCountedUpTo(), key -> new ArrayList<>()).add(eventId);
+                }
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            ViewCounts counts = statisticsClient.getViews(EVENT_ENTITY, missing, EventViewCache::eventUri,
+                    null, countedUpTo, unique);
+
+            for (Long eventId : missing) {
+                views.put(eventId, counts.get(eventId));
+
+                if (!counts.isFallback()) {
+                    cache.asMap().merge(eventId, new Entry(counts.get(eventId), countedUpTo, countedUpTo),
+                            EventViewCache::latest);
+                }
+            }
+        }
+
+        stale.forEach((from, ids) -> {
+            ViewCounts delta = statisticsClient.getViews(EVENT_ENTITY, ids, EventViewCache::eventUri,
+                    from, countedUpTo, false);
+
+            if (delta.isFallback()) {
+                return;
+            }
+
+            for (Long eventId : ids) {
+                // Another request may have moved the entry on meanwhile; the delta only applies to the entry it was read for.
+                Entry entry = cache.asMap().computeIfPresent(eventId, (id, current) -> current.getCountedUpTo().equals(from)
+                        ? new Entry(current.getCount() + delta.get(id), countedUpTo, current.getRecountedUpTo())
+                        : current);
+
+                if (entry != null) {
+                    views.put(eventId, entry.getCount());
+                }
+            }
+        });
+
+        return views;
+    }
+
+    /**
+     * The public event page, under which event views are recorded.
+     */
+    private static String eventUri(long eventId) {
+        return "/events/" + eventId;
+    }
+
+    private static Entry latest(Entry a, Entry b) {
+        return a.getCountedUpTo().isAfter(b.getCountedUpTo()) ? a : b;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static class Entry {
+        private final long count;
+        private final LocalDateTime countedUpTo;
+        /**
+         * End of the last count over the whole history, which later deltas were added to.
+         */
+        private final LocalDateTime recountedUpTo;
+    }
+}
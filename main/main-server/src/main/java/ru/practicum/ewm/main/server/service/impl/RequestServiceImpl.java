@@ -36,35 +36,14 @@ public class RequestServiceImpl implements RequestService {
     @Override
     @Transactional
     public ParticipationRequestDto create(long eventId, long userId) {
-        User user = getUserById(userId);
-        Event event = getEventById(eventId);
+        ParticipationRequestDto request = requestRepository.admit(eventId, userId, LocalDateTime.now())
+                .orElseThrow(() -> explainRejection(eventId, userId));
 
-        if (!event.getState().equals(EventStatus.PUBLISHED)) {
-            throw new AlreadyExistedException("Событие с таким id = " + eventId + " не является публичным");
-        }
-        if (event.getInitiator().getId().equals(userId)) {
-            throw new AlreadyExistedException("Событие с таким id = " + eventId + " уже существует");
-        }
-        if (event.getParticipantLimit() > 0 && event.getParticipantLimit() - getConfirmedRequests(eventId) <= 0) {
+        if (request.getStatus().equals(RequestStatus.CONFIRMED) && eventRepository.reserveSeats(eventId, 1) == 0) {
             throw new AlreadyExistedException("Количество заявок на участие в мероприятии было ограничено.");
         }
 
-        BooleanBuilder builder = new BooleanBuilder();
-        builder.and(QRequest.request.event.id.eq(eventId));
-        builder.and(QRequest.request.requester.id.eq(userId));
-        if (requestRepository.count(builder) > 0) {
-            throw new AlreadyExistedException("Запрос уже существует");
-        }
-
-        Request request = makeRequest(event, user);
-
-        if (!event.getRequestModeration() || event.getParticipantLimit() == 0) {
-            request.setStatus(RequestStatus.CONFIRMED);
-        }
-
-        eventRepository.save(event);
-
-        return mapper.toParticipationRequestDto(requestRepository.save(request));
+        return request;
     }
 
     @Override
@@ -89,9 +68,17 @@ public class RequestServiceImpl implements RequestService {
             throw new NotFoundException("Запроса с таким id = " + requestId + " не существует");
         }
 
+        // The status read above may already be stale: only the update that moves the row out of CONFIRMED
+        // gives the seat back, so a concurrent confirmation or a second cancel cannot skew the count.
+        if (requestRepository.updateStatusUnless(requestId, RequestStatus.CONFIRMED, RequestStatus.CANCELED) == 0
+                && requestRepository.updateStatus(List.of(requestId), RequestStatus.CONFIRMED,
+                RequestStatus.CANCELED) > 0) {
+            eventRepository.addConfirmedRequests(request.getEvent().getId(), -1);
+        }
+
         request.setStatus(RequestStatus.CANCELED);
 
-        return mapper.toParticipationRequestDto(requestRepository.save(request));
+        return mapper.toParticipationRequestDto(request);
     }
 
     @Override
@@ -106,13 +93,24 @@ public class RequestServiceImpl implements RequestService {
                 .collect(Collectors.toList());
     }
 
-    private Request makeRequest(Event event, User user) {
-        return Request.builder()
-                .requester(user)
-                .createDate(LocalDateTime.now())
-                .event(event)
-                .status(RequestStatus.PENDING)
-                .build();
+    /**
+     * Finds out why a request was not admitted; only runs once admission has failed.
+     */
+    private RuntimeException explainRejection(long eventId, long userId) {
+        getUserById(userId);
+        Event event = getEventById(eventId);
+
+        if (!event.getState().equals(EventStatus.PUBLISHED)) {
+            return new AlreadyExistedException("Событие с таким id = " + eventId + " не является публичным");
+        }
+        if (event.getInitiator().getId().equals(userId)) {
+            return new AlreadyExistedException("Событие с таким id = " + eventId + " уже существует");
+        }
+        if (event.getParticipantLimit() > 0 && event.getParticipantLimit() - event.getConfirmedRequests() <= 0) {
+            return new AlreadyExistedException("Количество заявок на участие в мероприятии было ограничено.");
+        }
+
+        return new AlreadyExistedException("Запрос уже существует");
     }
 
     private User getUserById(long userId) {
@@ -132,12 +130,4 @@ public class RequestServiceImpl implements RequestService {
                 () -> new NotFoundException("Запроса с таким id = " + requestId + " не существует")
         );
     }
-
-    private Long getConfirmedRequests(Long eventId) {
-        BooleanBuilder builder = new BooleanBuilder();
-        builder.and(QRequest.request.event.id.eq(eventId));
-        builder.and(QRequest.request.status.eq(RequestStatus.CONFIRMED));
-
-        return requestRepository.count(builder);
-    }
 }
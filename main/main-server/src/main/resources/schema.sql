@@ -31,6 +31,7 @@ CREATE TABLE IF NOT EXISTS event
     paid               BOOLEAN DEFAULT FALSE,
     request_moderation BOOLEAN DEFAULT TRUE,
     participant_limit  BIGINT  DEFAULT 0,
+    confirmed_requests BIGINT  DEFAULT 0                       NOT NULL,
     state              VARCHAR(16),
     create_date        TIMESTAMP WITHOUT TIME ZONE,
     published_date     TIMESTAMP WITHOUT TIME ZONE,
@@ -49,6 +50,7 @@ CREATE TABLE IF NOT EXISTS request
     create_date  TIMESTAMP WITHOUT TIME ZONE,
     status       VARCHAR(16),
     CONSTRAINT PK_REQUEST PRIMARY KEY (id),
+    CONSTRAINT UQ_REQUEST_EVENT_REQUESTER UNIQUE (event_id, requester_id),
     CONSTRAINT FK_REQUEST_USER
         FOREIGN KEY (requester_id) REFERENCES users (id),
     CONSTRAINT FK_REQUEST_EVENT
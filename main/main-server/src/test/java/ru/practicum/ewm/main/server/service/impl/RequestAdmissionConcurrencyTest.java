@@ -0,0 +1,212 @@
+package ru.practicum.ewm.main.server.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.practicum.ewm.main.application.event.EventStatus;
+import ru.practicum.ewm.main.application.event.RequestStatusUpdateRequest;
+import ru.practicum.ewm.main.application.request.ParticipationRequestDto;
+import ru.practicum.ewm.main.application.request.RequestStatus;
+import ru.practicum.ewm.main.server.entity.*;
+import ru.practicum.ewm.main.server.repository.CategoryRepository;
+import ru.practicum.ewm.main.server.repository.EventRepository;
+import ru.practicum.ewm.main.server.repository.RequestRepository;
+import ru.practicum.ewm.main.server.repository.UserRepository;
+import ru.practicum.ewm.main.server.service.EventService;
+import ru.practicum.ewm.main.server.service.RequestService;
+import ru.practicum.ewm.main.util.exception.AlreadyExistedException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Participation requests admitted and confirmed concurrently never take more seats than the event has.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(properties = {
+        "server.port=0",
+        "statistics.server.address=http://localhost:9090",
+        "application.name=ewm-main-service"
+})
+class RequestAdmissionConcurrencyTest {
+    private static final int LIMIT = 5;
+    private static final int REQUESTERS = 20;
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:14-alpine");
+
+    @Autowired
+    private RequestService requestService;
+    @Autowired
+    private EventService eventService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private RequestRepository requestRepository;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    @Test
+    void concurrentCreatesConfirmExactlyTheLimit() throws Exception {
+        Event event = createEvent(false);
+        List<Callable<?>> tasks = new ArrayList<>();
+
+        for (User requester : createUsers(REQUESTERS)) {
+            tasks.add(() -> requestService.create(event.getId(), requester.getId()));
+        }
+
+        runConcurrently(tasks);
+
+        assertConfirmed(event, LIMIT);
+    }
+
+    @Test
+    void createsRacingStatusUpdatesConfirmExactlyTheLimit() throws Exception {
+        Event event = createEvent(true);
+        List<Long> pending = new ArrayList<>();
+
+        for (User requester : createUsers(REQUESTERS / 2)) {
+            ParticipationRequestDto request = requestService.create(event.getId(), requester.getId());
+
+            assertEquals(RequestStatus.PENDING, request.getStatus());
+            pending.add(request.getId());
+        }
+
+        List<Callable<?>> tasks = new ArrayList<>();
+
+        for (int i = 0; i < pending.size(); i += 2) {
+            RequestStatusUpdateRequest update = RequestStatusUpdateRequest.builder()
+                    .requestIds(pending.subList(i, Math.min(i + 2, pending.size())))
+                    .status(RequestStatus.CONFIRMED)
+                    .build();
+
+            tasks.add(() -> eventService.updateRequestStatus(update, event.getId(), event.getInitiator().getId()));
+        }
+
+        for (User requester : createUsers(REQUESTERS / 2)) {
+            tasks.add(() -> requestService.create(event.getId(), requester.getId()));
+        }
+
+        runConcurrently(tasks);
+
+        assertConfirmed(event, LIMIT);
+    }
+
+    @Test
+    void concurrentCancelsGiveTheSeatBackOnce() throws Exception {
+        Event event = createEvent(false);
+        User requester = createUsers(1).get(0);
+        ParticipationRequestDto request = requestService.create(event.getId(), requester.getId());
+
+        assertEquals(RequestStatus.CONFIRMED, request.getStatus());
+
+        List<Callable<?>> tasks = new ArrayList<>();
+
+        for (int i = 0; i < REQUESTERS; i++) {
+            tasks.add(() -> requestService.cancel(request.getId(), requester.getId()));
+        }
+
+        runConcurrently(tasks);
+
+        assertConfirmed(event, 0);
+    }
+
+    private void assertConfirmed(Event event, long expected) {
+        long confirmed = requestRepository.count(QRequest.request.event.id.eq(event.getId())
+                .and(QRequest.request.status.eq(RequestStatus.CONFIRMED)));
+
+        assertEquals(expected, confirmed);
+        assertEquals(expected, eventRepository.findById(event.getId()).orElseThrow().getConfirmedRequests());
+    }
+
+    /**
+     * Starts all tasks at once and waits for them; a task refused with {@link AlreadyExistedException} is expected.
+     */
+    private static void runConcurrently(List<Callable<?>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        CountDownLatch start = new CountDownLatch(1);
+
+        try {
+            List<Future<?>> futures = tasks.stream()
+                    .map(task -> executor.submit(() -> {
+                        start.await();
+                        return task.call();
+                    }))
+                    .collect(Collectors.toList());
+
+            start.countDown();
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get(30, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    if (!(e.getCause() instanceof AlreadyExistedException)) {
+                        throw e;
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Event createEvent(boolean requestModeration) {
+        int n = SEQUENCE.incrementAndGet();
+        User initiator = createUsers(1).get(0);
+        Category category = categoryRepository.save(Category.builder()
+                .name("category" + n)
+                .build());
+
+        return eventRepository.save(Event.builder()
+                .title("event" + n)
+                .annotation("annotation")
+                .description("description")
+                .createdOn(LocalDateTime.now())
+                .eventDate(LocalDateTime.now().plusDays(1))
+                .publishedOn(LocalDateTime.now())
+                .initiator(initiator)
+                .category(category)
+                .location(new Location(55.75, 37.62))
+                .paid(false)
+                .participantLimit((long) LIMIT)
+                .requestModeration(requestModeration)
+                .state(EventStatus.PUBLISHED)
+                .build());
+    }
+
+    private List<User> createUsers(int count) {
+        List<User> users = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            int n = SEQUENCE.incrementAndGet();
+
+            users.add(userRepository.save(User.builder()
+                    .name("user" + n)
+                    .email("user" + n + "@mail.ru")
+                    .build()));
+        }
+
+        return users;
+    }
+}
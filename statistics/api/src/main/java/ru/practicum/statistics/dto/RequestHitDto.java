@@ -5,6 +5,7 @@ import lombok.*;
 
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
 import javax.validation.constraints.Size;
 import java.time.LocalDateTime;
 
@@ -32,4 +33,13 @@ public class RequestHitDto {
     @NotNull
     @JsonFormat(pattern = DATE_TIME_FORMAT)
     private LocalDateTime timestamp;
+
+    /**
+     * Type of the viewed entity, e.g. {@code event}; recorded together with {@link #entityId} when both are set.
+     */
+    @Size(max = 64)
+    private String entityType;
+
+    @Positive
+    private Long entityId;
 }
@@ -1,5 +1,6 @@
 package ru.practicum.statistics.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -14,4 +15,14 @@ public class ResponseHitDto {
     private String app;
     private String uri;
     private Long hits;
+
+    /**
+     * Relative standard error of {@link #hits} when it is an estimate, absent for exact counts.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double error;
+
+    public ResponseHitDto(String app, String uri, Long hits) {
+        this(app, uri, hits, null);
+    }
 }
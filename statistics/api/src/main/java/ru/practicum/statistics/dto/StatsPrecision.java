@@ -0,0 +1,19 @@
+package ru.practicum.statistics.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+public enum StatsPrecision {
+    EXACT,
+    APPROX;
+
+    @JsonCreator
+    public static StatsPrecision from(String value) {
+        for (StatsPrecision precision : values()) {
+            if (precision.name().equalsIgnoreCase(value)) {
+                return precision;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown precision: " + value);
+    }
+}
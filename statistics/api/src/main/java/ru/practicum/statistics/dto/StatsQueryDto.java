@@ -0,0 +1,36 @@
+package ru.practicum.statistics.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.*;
+
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static ru.practicum.util.constant.Constants.DATE_TIME_FORMAT;
+
+/**
+ * Body of POST /stats/query, the same query as GET /stats for uri sets too large for a URL.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder(toBuilder = true)
+public class StatsQueryDto {
+
+    @NotNull
+    @JsonFormat(pattern = DATE_TIME_FORMAT)
+    private LocalDateTime start;
+
+    @NotNull
+    @JsonFormat(pattern = DATE_TIME_FORMAT)
+    private LocalDateTime end;
+
+    private List<String> uris;
+
+    private boolean unique;
+
+    @Builder.Default
+    private StatsPrecision precision = StatsPrecision.EXACT;
+}
@@ -0,0 +1,77 @@
+package ru.practicum.statistics.wire;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import lombok.experimental.UtilityClass;
+import ru.practicum.statistics.dto.RequestHitDto;
+import ru.practicum.statistics.dto.StatsQueryDto;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Binary wire format for hits and stats, negotiated as {@code application/cbor}.
+ * Field names stay as in JSON; date-times are sent as epoch milliseconds (local date-time read as UTC)
+ * instead of formatted strings.
+ */
+@UtilityClass
+public class StatisticsCbor {
+    public static final String MEDIA_TYPE = "application/cbor";
+
+    public static ObjectMapper createObjectMapper() {
+        return CBORMapper.builder()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .addMixIn(RequestHitDto.class, RequestHitDtoMixIn.class)
+                .addMixIn(StatsQueryDto.class, StatsQueryDtoMixIn.class)
+                .build();
+    }
+
+    private abstract static class RequestHitDtoMixIn {
+        @JsonSerialize(using = EpochMillisSerializer.class)
+        @JsonDeserialize(using = EpochMillisDeserializer.class)
+        private LocalDateTime timestamp;
+    }
+
+    private abstract static class StatsQueryDtoMixIn {
+        @JsonSerialize(using = EpochMillisSerializer.class)
+        @JsonDeserialize(using = EpochMillisDeserializer.class)
+        private LocalDateTime start;
+
+        @JsonSerialize(using = EpochMillisSerializer.class)
+        @JsonDeserialize(using = EpochMillisDeserializer.class)
+        private LocalDateTime end;
+    }
+
+    private static class EpochMillisSerializer extends StdSerializer<LocalDateTime> {
+        EpochMillisSerializer() {
+            super(LocalDateTime.class);
+        }
+
+        @Override
+        public void serialize(LocalDateTime value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeNumber(value.toInstant(ZoneOffset.UTC).toEpochMilli());
+        }
+    }
+
+    private static class EpochMillisDeserializer extends StdDeserializer<LocalDateTime> {
+        EpochMillisDeserializer() {
+            super(LocalDateTime.class);
+        }
+
+        @Override
+        public LocalDateTime deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(p.getLongValue()), ZoneOffset.UTC);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package ru.practicum.statistics.wire;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.practicum.statistics.dto.RequestHitDto;
+import ru.practicum.statistics.dto.ResponseHitDto;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to write and read a list of hits as JSON and as CBOR, for ingested hits and for stats rows.
+ * {@link #main} first prints the encoded size per hit, then runs the benchmarks with the GC profiler,
+ * whose {@code gc.alloc.rate.norm} is the bytes allocated per list. From the repository root:
+ * <pre>
+ * mvn -pl statistics/api -am install -DskipTests
+ * mvn -pl statistics/api exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath ru.practicum.statistics.wire.WireFormatBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+    private static final int[] SIZES = {1, 100, 1000};
+
+    @Param({"1", "100", "1000"})
+    int hits;
+
+    private ObjectWriter jsonRequestWriter;
+    private ObjectReader jsonRequestReader;
+    private ObjectWriter cborRequestWriter;
+    private ObjectReader cborRequestReader;
+    private ObjectWriter jsonResponseWriter;
+    private ObjectReader jsonResponseReader;
+    private ObjectWriter cborResponseWriter;
+    private ObjectReader cborResponseReader;
+
+    private List<RequestHitDto> requests;
+    private List<ResponseHitDto> responses;
+    private byte[] jsonRequests;
+    private byte[] cborRequests;
+    private byte[] jsonResponses;
+    private byte[] cborResponses;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper json = JsonMapper.builder()
+                .addModule(new JavaTimeModule())
+                .build();
+        ObjectMapper cbor = StatisticsCbor.createObjectMapper();
+        JavaType requestList = json.getTypeFactory().constructCollectionType(List.class, RequestHitDto.class);
+        JavaType responseList = json.getTypeFactory().constructCollectionType(List.class, ResponseHitDto.class);
+
+        jsonRequestWriter = json.writerFor(requestList);
+        jsonRequestReader = json.readerFor(requestList);
+        cborRequestWriter = cbor.writerFor(requestList);
+        cborRequestReader = cbor.readerFor(requestList);
+        jsonResponseWriter = json.writerFor(responseList);
+        jsonResponseReader = json.readerFor(responseList);
+        cborResponseWriter = cbor.writerFor(responseList);
+        cborResponseReader = cbor.readerFor(responseList);
+
+        requests = new ArrayList<>(hits);
+        responses = new ArrayList<>(hits);
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        for (int i = 0; i < hits; i++) {
+            requests.add(RequestHitDto.builder()
+                    .app("ewm-main-service")
+                    .uri("/events/" + (i + 1))
+                    .ip("192.168." + (i / 256 % 256) + "." + (i % 256))
+                    .timestamp(now.minusSeconds(i))
+                    .entityType("event")
+                    .entityId(i + 1L)
+                    .build());
+            responses.add(new ResponseHitDto("ewm-main-service", "/events/" + (i + 1), 1000L - i % 1000));
+        }
+
+        jsonRequests = jsonRequestWriter.writeValueAsBytes(requests);
+        cborRequests = cborRequestWriter.writeValueAsBytes(requests);
+        jsonResponses = jsonResponseWriter.writeValueAsBytes(responses);
+        cborResponses = cborResponseWriter.writeValueAsBytes(responses);
+    }
+
+    @Benchmark
+    public byte[] writeRequestsJson() throws IOException {
+        return jsonRequestWriter.writeValueAsBytes(requests);
+    }
+
+    @Benchmark
+    public byte[] writeRequestsCbor() throws IOException {
+        return cborRequestWriter.writeValueAsBytes(requests);
+    }
+
+    @Benchmark
+    public List<RequestHitDto> readRequestsJson() throws IOException {
+        return jsonRequestReader.readValue(jsonRequests);
+    }
+
+    @Benchmark
+    public List<RequestHitDto> readRequestsCbor() throws IOException {
+        return cborRequestReader.readValue(cborRequests);
+    }
+
+    @Benchmark
+    public byte[] writeResponsesJson() throws IOException {
+        return jsonResponseWriter.writeValueAsBytes(responses);
+    }
+
+    @Benchmark
+    public byte[] writeResponsesCbor() throws IOException {
+        return cborResponseWriter.writeValueAsBytes(responses);
+    }
+
+    @Benchmark
+    public List<ResponseHitDto> readResponsesJson() throws IOException {
+        return jsonResponseReader.readValue(jsonResponses);
+    }
+
+    @Benchmark
+    public List<ResponseHitDto> readResponsesCbor() throws IOException {
+        return cborResponseReader.readValue(cborResponses);
+    }
+
+    public static void main(String[] args) throws Exception {
+        WireFormatBenchmark benchmark = new WireFormatBenchmark();
+
+        System.out.println("hits  request json  request cbor  response json  response cbor  (bytes per hit)");
+
+        for (int size : SIZES) {
+            benchmark.hits = size;
+            benchmark.setUp();
+
+            System.out.printf("%4d  %12.1f  %12.1f  %13.1f  %13.1f%n",
+                    size,
+                    (double) benchmark.jsonRequests.length / size,
+                    (double) benchmark.cborRequests.length / size,
+                    (double) benchmark.jsonResponses.length / size,
+                    (double) benchmark.cborResponses.length / size);
+        }
+
+        new Runner(new OptionsBuilder()
+                .include(WireFormatBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,35 @@
+package ru.practicum.statistics.client;
+
+import ru.practicum.statistics.hash.KeyHash;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Hash ring with virtual nodes. A key belongs to the first virtual node at or after its hash,
+ * so adding one of n nodes moves only about 1/n of the keys, all of them to the new node.
+ */
+final class ConsistentHashRing<T> {
+    private final TreeMap<Long, T> ring = new TreeMap<>();
+
+    /**
+     * @param nodes nodes by a stable name, e.g. their url, so that the ring does not depend on list order
+     */
+    ConsistentHashRing(Map<String, T> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("At least one node is required");
+        }
+
+        nodes.forEach((name, node) -> {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(KeyHash.hash(name + "#" + i), node);
+            }
+        });
+    }
+
+    T get(String key) {
+        Map.Entry<Long, T> entry = ring.ceilingEntry(KeyHash.hash(key));
+
+        return entry == null ? ring.firstEntry().getValue() : entry.getValue();
+    }
+}
@@ -0,0 +1,117 @@
+package ru.practicum.statistics.client;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.statistics.dto.RequestHitDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Bounded hit queue drained by a background thread once flushSize hits are collected
+ * or flushInterval has passed, whichever comes first.
+ */
+@Slf4j
+class HitBuffer implements AutoCloseable {
+    private final BlockingQueue<RequestHitDto> queue;
+    private final Consumer<List<RequestHitDto>> sender;
+    private final StatisticsClientProperties properties;
+    private final Thread flusher;
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean running = true;
+
+    HitBuffer(StatisticsClientProperties properties, Consumer<List<RequestHitDto>> sender) {
+        this.queue = new ArrayBlockingQueue<>(properties.getBufferCapacity());
+        this.sender = sender;
+        this.properties = properties;
+        this.flusher = new Thread(this::run, "statistics-hit-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    void offer(RequestHitDto hitDto) {
+        boolean accepted;
+
+        if (!running) {
+            accepted = false;
+        } else if (properties.getOverflowPolicy() == HitOverflowPolicy.BLOCK) {
+            try {
+                accepted = queue.offer(hitDto, properties.getOfferTimeout().toNanos(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                accepted = false;
+            }
+        } else {
+            accepted = queue.offer(hitDto);
+        }
+
+        if (!accepted) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+
+        try {
+            flusher.join(properties.getShutdownTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (!queue.isEmpty()) {
+            log.warn("Statistics buffer closed with {} unsent hits", queue.size());
+        }
+    }
+
+    private void run() {
+        int flushSize = properties.getFlushSize();
+        long flushIntervalNanos = properties.getFlushInterval().toNanos();
+        List<RequestHitDto> batch = new ArrayList<>(flushSize);
+
+        while (running || !queue.isEmpty()) {
+            long deadline = System.nanoTime() + flushIntervalNanos;
+
+            try {
+                while (batch.size() < flushSize) {
+                    long remaining = deadline - System.nanoTime();
+                    RequestHitDto hitDto = running && remaining > 0
+                            ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                            : queue.poll();
+
+                    if (hitDto == null) {
+                        break;
+                    }
+
+                    batch.add(hitDto);
+                    queue.drainTo(batch, flushSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+
+            if (!batch.isEmpty()) {
+                send(batch);
+                batch = new ArrayList<>(flushSize);
+            }
+        }
+    }
+
+    private void send(List<RequestHitDto> batch) {
+        try {
+            sender.accept(batch);
+        } catch (RuntimeException e) {
+            dropped.addAndGet(batch.size());
+            log.warn("Failed to send {} hits to statistics service: {}", batch.size(), e.getMessage());
+        }
+    }
+}
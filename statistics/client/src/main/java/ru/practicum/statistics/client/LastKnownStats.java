@@ -0,0 +1,92 @@
+package ru.practicum.statistics.client;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Value;
+import ru.practicum.statistics.dto.ResponseHitDto;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Last counts received from each node per (uri, start, unique) and per (entity, id, unique), served when that node
+ * cannot be reached. Counts are kept per node because a node's answer is only its part of a total. A uri count is only recalled for the same start and an end no earlier than the one it was counted
+ * up to, so the fallback never answers a range wider than the one asked for; it may stop short of the requested end.
+ */
+class LastKnownStats {
+    private final Cache<StatsKey, Counted> cache;
+    private final Cache<ViewsKey, Long> views;
+
+    LastKnownStats(StatisticsClientProperties properties) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getFallbackCacheSize())
+                .expireAfterWrite(properties.getFallbackTtl())
+                .build();
+        this.views = Caffeine.newBuilder()
+                .maximumSize(properties.getFallbackCacheSize())
+                .expireAfterWrite(properties.getFallbackTtl())
+                .build();
+    }
+
+    void remember(String node, List<ResponseHitDto> hits, LocalDateTime start, LocalDateTime end, boolean unique) {
+        hits.forEach(hit -> cache.put(new StatsKey(node, hit.getUri(), start, unique), new Counted(hit, end)));
+    }
+
+    List<ResponseHitDto> recall(String node,
+                                List<String> uris,
+                                LocalDateTime start,
+                                LocalDateTime end,
+                                boolean unique) {
+        return uris.stream()
+                .map(uri -> cache.getIfPresent(new StatsKey(node, uri, start, unique)))
+                .filter(Objects::nonNull)
+                .filter(counted -> !counted.end.isAfter(end))
+                .map(Counted::getHit)
+                .collect(Collectors.toList());
+    }
+
+    void rememberViews(String node, String entityType, Map<Long, Long> counts, boolean unique) {
+        counts.forEach((id, count) -> views.put(new ViewsKey(node, entityType, id, unique), count));
+    }
+
+    Map<Long, Long> recallViews(String node, String entityType, Collection<Long> ids, boolean unique) {
+        Map<Long, Long> counts = new HashMap<>();
+
+        for (Long id : ids) {
+            Long count = views.getIfPresent(new ViewsKey(node, entityType, id, unique));
+
+            if (count != null) {
+                counts.put(id, count);
+            }
+        }
+
+        return counts;
+    }
+
+    @Value
+    private static class StatsKey {
+        String node;
+        String uri;
+        LocalDateTime start;
+        boolean unique;
+    }
+
+    @Value
+    private static class Counted {
+        ResponseHitDto hit;
+        LocalDateTime end;
+    }
+
+    @Value
+    private static class ViewsKey {
+        String node;
+        String entityType;
+        long id;
+        boolean unique;
+    }
+}
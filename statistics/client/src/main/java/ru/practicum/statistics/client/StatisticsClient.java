@@ -1,49 +1,353 @@
 package ru.practicum.statistics.client;
 
-import org.apache.http.HttpHeaders;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 import ru.practicum.statistics.dto.RequestHitDto;
 import ru.practicum.statistics.dto.ResponseHitDto;
+import ru.practicum.statistics.dto.StatsQueryDto;
+import ru.practicum.statistics.wire.StatisticsCbor;
 
 import javax.servlet.http.HttpServletRequest;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
 
 import static ru.practicum.util.constant.Constants.DATE_TIME_FORMATTER;
 
-public class StatisticsClient {
-    private final WebClient webClient;
+/**
+ * Client of one or more statistics service nodes. Every hit is sent to the node owning its uri by consistent hashing.
+ * Once nodes are added or removed a uri's hits are spread over several nodes, so total counts are asked of every
+ * node and their partial counts added up. Unique counts cannot be added up: they are asked of the node owning the
+ * uri, for entity views the node owning the entity's canonical uri, and leave out visitors that node did not record.
+ */
+@Slf4j
+public class StatisticsClient implements AutoCloseable {
+    private static final ParameterizedTypeReference<List<ResponseHitDto>> RESPONSE_HITS = new ParameterizedTypeReference<>() {
+    };
+    private static final ParameterizedTypeReference<Map<Long, Long>> VIEW_COUNTS = new ParameterizedTypeReference<>() {
+    };
+
+    private final ConnectionProvider connectionProvider;
     private final String appName;
+    private final Duration callTimeout;
+    private final MediaType mediaType;
+    private final int postQueryThreshold;
+    private final LastKnownStats lastKnownStats;
+    private final Counter fallbacks;
+    private final List<StatisticsNode> nodes;
+    private final ConsistentHashRing<StatisticsNode> ring;
 
     public StatisticsClient(String serverUrl, String appName) {
-        this.webClient = WebClient.create(serverUrl);
+        this(serverUrl, appName, new StatisticsClientProperties());
+    }
+
+    public StatisticsClient(String serverUrl, String appName, StatisticsClientProperties properties) {
+        this(List.of(serverUrl), appName, properties, Metrics.globalRegistry);
+    }
+
+    public StatisticsClient(List<String> serverUrls,
+                            String appName,
+                            StatisticsClientProperties properties,
+                            MeterRegistry meterRegistry) {
+        this.connectionProvider = ConnectionProvider.builder("statistics")
+                .maxConnections(properties.getMaxConnections())
+                .pendingAcquireTimeout(properties.getPendingAcquireTimeout())
+                .maxIdleTime(properties.getMaxIdleTime())
+                .build();
+        this.mediaType = properties.getWireFormat() == WireFormat.CBOR
+                ? MediaType.valueOf(StatisticsCbor.MEDIA_TYPE)
+                : MediaType.APPLICATION_JSON;
         this.appName = appName;
+        this.callTimeout = properties.getCallTimeout();
+        this.postQueryThreshold = properties.getPostQueryThreshold();
+        this.lastKnownStats = new LastKnownStats(properties);
+        this.fallbacks = Counter.builder("statistics.client.fallbacks").register(meterRegistry);
+
+        WebClient.Builder webClientBuilder = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connectionProvider)
+                        .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) properties.getConnectTimeout().toMillis())
+                        .responseTimeout(properties.getCallTimeout())))
+                .codecs(configurer -> {
+                    ObjectMapper objectMapper = StatisticsCbor.createObjectMapper();
+
+                    configurer.customCodecs().register(new Jackson2CborDecoder(objectMapper));
+                    configurer.customCodecs().register(new Jackson2CborEncoder(objectMapper));
+                });
+        CircuitBreakerRegistry circuitBreakers = createCircuitBreakerRegistry(properties, meterRegistry);
+        Map<String, StatisticsNode> nodesByUrl = new LinkedHashMap<>();
+
+        for (String serverUrl : new LinkedHashSet<>(serverUrls)) {
+            // A single node keeps the breaker name it had before sharding.
+            String breakerName = serverUrls.size() == 1 ? "statistics" : "statistics-" + serverUrl;
+            StatisticsNode node = new StatisticsNode(serverUrl,
+                    webClientBuilder.clone().baseUrl(serverUrl).build(),
+                    circuitBreakers.circuitBreaker(breakerName));
+
+            if (properties.isAsync()) {
+                node.hitBuffer = new HitBuffer(properties, hitDtos -> sendHits(node, hitDtos).block());
+            }
+
+            nodesByUrl.put(serverUrl, node);
+        }
+
+        this.nodes = List.copyOf(nodesByUrl.values());
+        this.ring = new ConsistentHashRing<>(nodesByUrl, properties.getVirtualNodes());
     }
 
+    /**
+     * Records a hit. A failure to reach the statistics service is logged and does not fail the caller.
+     */
     public void postHit(HttpServletRequest httpServletRequest) {
+        postHit(httpServletRequest, null, null);
+    }
+
+    /**
+     * Records a hit that is also counted as a view of the given entity.
+     */
+    public void postHit(HttpServletRequest httpServletRequest, String entityType, Long entityId) {
         RequestHitDto hitDto = RequestHitDto.builder()
                 .app(appName)
                 .uri(httpServletRequest.getRequestURI())
                 .ip(httpServletRequest.getRemoteAddr())
                 .timestamp(LocalDateTime.now())
+                .entityType(entityType)
+                .entityId(entityId)
                 .build();
+        StatisticsNode node = ring.get(hitDto.getUri());
+
+        if (node.hitBuffer != null) {
+            node.hitBuffer.offer(hitDto);
+            return;
+        }
+
+        try {
+            guarded(node, node.webClient.post()
+                    .uri(uriBuilder -> uriBuilder
+                            .path("/hit")
+                            .build())
+                    .contentType(mediaType)
+                    .accept(mediaType)
+                    .bodyValue(hitDto)
+                    .retrieve()
+                    .bodyToMono(RequestHitDto.class)
+                    .timeout(callTimeout))
+                    .block();
+        } catch (RuntimeException e) {
+            log.warn("Failed to send hit to statistics service: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Sends the hits to the nodes owning their uris in parallel. Fails if any node fails.
+     */
+    public void postHits(List<RequestHitDto> hitDtos) {
+        Map<StatisticsNode, List<RequestHitDto>> byNode = hitDtos.stream()
+                .collect(Collectors.groupingBy(hitDto -> ring.get(hitDto.getUri())));
+
+        Flux.fromIterable(byNode.entrySet())
+                .flatMapDelayError(e -> sendHits(e.getKey(), e.getValue()), nodes.size(), 1)
+                .then()
+                .block();
+    }
+
+    public long getDroppedHits() {
+        return nodes.stream()
+                .filter(node -> node.hitBuffer != null)
+                .mapToLong(node -> node.hitBuffer.getDropped())
+                .sum();
+    }
+
+    /**
+     * Returns the stats of the uris, asked in parallel of every node for total counts and of the nodes owning
+     * the uris for unique ones. For a node that fails or whose circuit is open, the last counts it returned for
+     * the uris from the same start are used instead, provided they were counted up to no later than end.
+     */
+    public List<ResponseHitDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
+        Map<StatisticsNode, List<String>> targets = unique ? route(uris) : everyNode(uris);
+
+        return Flux.fromIterable(targets.entrySet())
+                .flatMap(e -> guarded(e.getKey(), fetchStats(e.getKey(), start, end, e.getValue(), unique))
+                        .doOnNext(hits -> lastKnownStats.remember(e.getKey().url, hits, start, end, unique))
+                        .onErrorResume(ex -> {
+                            fallbacks.increment();
+                            log.warn("Serving last known stats, statistics node {} failed: {}",
+                                    e.getKey().url, ex.getMessage());
+
+                            return Mono.just(lastKnownStats.recall(e.getKey().url, e.getValue(), start, end, unique));
+                        }))
+                .flatMapIterable(hits -> hits)
+                .collect(Collectors.toMap(hit -> List.of(hit.getApp(), hit.getUri()),
+                        hit -> hit,
+                        StatisticsClient::add,
+                        LinkedHashMap::new))
+                .flatMapIterable(Map::values)
+                .sort(Comparator.comparing(ResponseHitDto::getHits).reversed())
+                .collectList()
+                .block();
+    }
+
+    /**
+     * Returns the hits of one uri, added up over every node, or its unique visitors from the node owning it.
+     * For a node that fails, the last count it returned for the uri, start and unique flag up to no later
+     * than end is used instead, or 0 if there is none.
+     */
+    public long getCount(String uri, LocalDateTime start, LocalDateTime end, boolean unique) {
+        List<StatisticsNode> targets = unique ? List.of(ring.get(uri)) : nodes;
+
+        Long count = Flux.fromIterable(targets)
+                .flatMap(node -> guarded(node, fetchCount(node, uri, start, end, unique))
+                        .doOnNext(hits -> lastKnownStats.remember(node.url,
+                                List.of(new ResponseHitDto(appName, uri, hits)), start, end, unique))
+                        .onErrorResume(e -> {
+                            fallbacks.increment();
+                            log.warn("Serving last known count, statistics node {} failed: {}",
+                                    node.url, e.getMessage());
+
+                            return Mono.justOrEmpty(lastKnownStats.recall(node.url, List.of(uri), start, end, unique)
+                                    .stream()
+                                    .map(ResponseHitDto::getHits)
+                                    .findFirst());
+                        }))
+                .reduce(0L, Long::sum)
+                .block();
+
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Returns the views of the entities recorded from start inclusive to end exclusive, either of which may be null.
+     * Total views are added up over every node. Unique views of an id are asked of the node owning its canonical
+     * uri, the one its views are recorded under. For a node that fails, the last whole-history counts it returned
+     * for the ids are used instead, see {@link ViewCounts#isFallback()}.
+     */
+    public ViewCounts getViews(String entityType,
+                               Collection<Long> ids,
+                               LongFunction<String> canonicalUri,
+                               LocalDateTime start,
+                               LocalDateTime end,
+                               boolean unique) {
+        if (ids.isEmpty()) {
+            return ViewCounts.empty();
+        }
+
+        Map<StatisticsNode, List<Long>> targets = unique
+                ? ids.stream().collect(Collectors.groupingBy(id -> ring.get(canonicalUri.apply(id)),
+                        LinkedHashMap::new,
+                        Collectors.toList()))
+                : everyNode(List.copyOf(ids));
+        AtomicBoolean fallback = new AtomicBoolean();
+
+        Map<Long, Long> views = Flux.fromIterable(targets.entrySet())
+                .flatMap(e -> guarded(e.getKey(), fetchViews(e.getKey(), entityType, e.getValue(), start, end, unique))
+                        .doOnNext(counts -> {
+                            // Only counts over the whole history are a sensible answer for any later request.
+                            if (start == null) {
+                                lastKnownStats.rememberViews(e.getKey().url, entityType, counts, unique);
+                            }
+                        })
+                        .onErrorResume(ex -> {
+                            fallbacks.increment();
+                            fallback.set(true);
+                            log.warn("Serving last known views, statistics node {} failed: {}",
+                                    e.getKey().url, ex.getMessage());
+
+                            return Mono.just(lastKnownStats.recallViews(e.getKey().url,
+                                    entityType, e.getValue(), unique));
+                        }))
+                .reduceWith(HashMap<Long, Long>::new, (total, counts) -> {
+                    counts.forEach((id, count) -> total.merge(id, count, Long::sum));
+                    return total;
+                })
+                .block();
+
+        return ViewCounts.of(views, fallback.get());
+    }
+
+    @Override
+    public void close() {
+        nodes.stream()
+                .filter(node -> node.hitBuffer != null)
+                .forEach(node -> node.hitBuffer.close());
+
+        connectionProvider.dispose();
+    }
+
+    /**
+     * Groups the uris by owning node. An empty list or one with patterns can match uris on any node,
+     * so it is sent to all of them.
+     */
+    private Map<StatisticsNode, List<String>> route(List<String> uris) {
+        if (nodes.size() == 1 || uris.isEmpty() || uris.stream().anyMatch(uri -> uri.contains("*"))) {
+            return everyNode(uris);
+        }
+
+        return uris.stream()
+                .collect(Collectors.groupingBy(ring::get, LinkedHashMap::new, Collectors.toList()));
+    }
+
+    private <K> Map<StatisticsNode, List<K>> everyNode(List<K> keys) {
+        Map<StatisticsNode, List<K>> all = new LinkedHashMap<>();
+        nodes.forEach(node -> all.put(node, keys));
+
+        return all;
+    }
+
+    /**
+     * Adds up the partial counts of one (app, uri) from two nodes.
+     */
+    private static ResponseHitDto add(ResponseHitDto a, ResponseHitDto b) {
+        Double error = a.getError() == null ? b.getError()
+                : b.getError() == null ? a.getError() : Math.max(a.getError(), b.getError());
+
+        return new ResponseHitDto(a.getApp(), a.getUri(), a.getHits() + b.getHits(), error);
+    }
 
-        webClient.post()
+    private Mono<Void> sendHits(StatisticsNode node, List<RequestHitDto> hitDtos) {
+        return guarded(node, node.webClient.post()
                 .uri(uriBuilder -> uriBuilder
-                        .path("/hit")
+                        .path("/hits/batch")
                         .build())
-                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
-                .bodyValue(hitDto)
+                .contentType(mediaType)
+                .bodyValue(hitDtos)
                 .retrieve()
-                .bodyToMono(RequestHitDto.class)
-                .block();
+                .toBodilessEntity()
+                .timeout(callTimeout))
+                .then();
     }
 
-    public List<ResponseHitDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
+    private Mono<List<ResponseHitDto>> fetchStats(StatisticsNode node,
+                                                  LocalDateTime start,
+                                                  LocalDateTime end,
+                                                  List<String> uris,
+                                                  Boolean unique) {
+        if (uris.size() > postQueryThreshold) {
+            return queryStats(node, start, end, uris, unique);
+        }
 
-        return webClient.get()
+        return node.webClient.get()
                 .uri(uriBuilder -> uriBuilder
                         .path("/stats")
                         .queryParam("start", start.format(DATE_TIME_FORMATTER))
@@ -51,11 +355,127 @@ public class StatisticsClient {
                         .queryParam("uris", String.join(", ", uris))
                         .queryParam("unique", unique.toString())
                         .build())
-                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                .accept(mediaType)
                 .retrieve()
-                .bodyToFlux(ResponseHitDto.class)
-                .collectList()
-                .block();
+                // The CBOR decoder cannot stream, so the list is decoded as one value.
+                .bodyToMono(RESPONSE_HITS)
+                .timeout(callTimeout);
+    }
+
+    private Mono<List<ResponseHitDto>> queryStats(StatisticsNode node,
+                                                  LocalDateTime start,
+                                                  LocalDateTime end,
+                                                  List<String> uris,
+                                                  Boolean unique) {
+        StatsQueryDto query = StatsQueryDto.builder()
+                .start(start)
+                .end(end)
+                .uris(uris)
+                .unique(unique)
+                .build();
+
+        return node.webClient.post()
+                .uri(uriBuilder -> uriBuilder
+                        .path("/stats/query")
+                        .build())
+                .contentType(mediaType)
+                .accept(mediaType)
+                .bodyValue(query)
+                .retrieve()
+                .bodyToMono(RESPONSE_HITS)
+                .timeout(callTimeout);
+    }
+
+    private Mono<Long> fetchCount(StatisticsNode node,
+                                  String uri,
+                                  LocalDateTime start,
+                                  LocalDateTime end,
+                                  boolean unique) {
+        return node.webClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path("/stats/count")
+                        .queryParam("start", start.format(DATE_TIME_FORMATTER))
+                        .queryParam("end", end.format(DATE_TIME_FORMATTER))
+                        .queryParam("uri", uri)
+                        .queryParam("unique", unique)
+                        .build())
+                .accept(mediaType)
+                .retrieve()
+                .bodyToMono(Long.class)
+                .timeout(callTimeout);
+    }
+
+    private Mono<Map<Long, Long>> fetchViews(StatisticsNode node,
+                                             String entityType,
+                                             Collection<Long> ids,
+                                             LocalDateTime start,
+                                             LocalDateTime end,
+                                             boolean unique) {
+        return node.webClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path("/stats/views")
+                        .queryParam("entity", entityType)
+                        .queryParam("ids", ids.stream().map(String::valueOf).collect(Collectors.joining(",")))
+                        .queryParamIfPresent("start", Optional.ofNullable(start).map(DATE_TIME_FORMATTER::format))
+                        .queryParamIfPresent("end", Optional.ofNullable(end).map(DATE_TIME_FORMATTER::format))
+                        .queryParam("unique", unique)
+                        .build())
+                .accept(mediaType)
+                .retrieve()
+                .bodyToMono(VIEW_COUNTS)
+                .timeout(callTimeout)
+                .defaultIfEmpty(Map.of());
+    }
+
+    /**
+     * Runs the call under the node's circuit breaker without blocking, so calls to several nodes overlap.
+     */
+    private static <T> Mono<T> guarded(StatisticsNode node, Mono<T> call) {
+        CircuitBreaker circuitBreaker = node.circuitBreaker;
+
+        return Mono.defer(() -> {
+            circuitBreaker.acquirePermission();
+            long start = System.nanoTime();
+
+            return call
+                    .doOnSuccess(ignored -> circuitBreaker.onSuccess(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                    .doOnError(e -> circuitBreaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, e))
+                    .doOnCancel(circuitBreaker::releasePermission);
+        });
+    }
+
+    private static CircuitBreakerRegistry createCircuitBreakerRegistry(StatisticsClientProperties properties,
+                                                                       MeterRegistry meterRegistry) {
+        CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+                .failureRateThreshold(properties.getFailureRateThreshold())
+                .slidingWindowSize(properties.getSlidingWindowSize())
+                .minimumNumberOfCalls(properties.getMinimumNumberOfCalls())
+                .waitDurationInOpenState(properties.getWaitInOpenState())
+                .permittedNumberOfCallsInHalfOpenState(properties.getPermittedCallsInHalfOpenState())
+                // Rejected requests say nothing about the health of the service.
+                .recordException(e -> !(e instanceof WebClientResponseException)
+                        || ((WebClientResponseException) e).getStatusCode().is5xxServerError())
+                .build();
+        CircuitBreakerRegistry registry = CircuitBreakerRegistry.of(config);
+
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(registry).bindTo(meterRegistry);
+
+        return registry;
+    }
+
+    /**
+     * One statistics service node with its own circuit breaker and, in async mode, its own hit buffer.
+     */
+    private static class StatisticsNode {
+        private final String url;
+        private final WebClient webClient;
+        private final CircuitBreaker circuitBreaker;
+        private HitBuffer hitBuffer;
+
+        private StatisticsNode(String url, WebClient webClient, CircuitBreaker circuitBreaker) {
+            this.url = url;
+            this.webClient = webClient;
+            this.circuitBreaker = circuitBreaker;
+        }
     }
 }
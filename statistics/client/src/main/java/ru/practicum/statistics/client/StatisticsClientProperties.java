@@ -0,0 +1,79 @@
+package ru.practicum.statistics.client;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+public class StatisticsClientProperties {
+
+    /**
+     * Send hits from a background buffer instead of a blocking POST /hit per request.
+     */
+    private boolean async = false;
+
+    private int bufferCapacity = 10_000;
+
+    private int flushSize = 100;
+
+    private Duration flushInterval = Duration.ofSeconds(1);
+
+    private HitOverflowPolicy overflowPolicy = HitOverflowPolicy.DROP;
+
+    /**
+     * How long {@link HitOverflowPolicy#BLOCK} waits for free space before the hit is dropped.
+     */
+    private Duration offerTimeout = Duration.ofMillis(50);
+
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+
+    /**
+     * Body format for hits and stats; CBOR saves bytes and formatting work on both sides.
+     */
+    private WireFormat wireFormat = WireFormat.JSON;
+
+    /**
+     * Stats queries with more uris than this are sent as POST /stats/query instead of a GET query string.
+     */
+    private int postQueryThreshold = 50;
+
+    private Duration connectTimeout = Duration.ofSeconds(1);
+
+    /**
+     * Upper bound for a whole call to the statistics service, including waiting for a pooled connection.
+     */
+    private Duration callTimeout = Duration.ofSeconds(2);
+
+    private int maxConnections = 50;
+
+    private Duration pendingAcquireTimeout = Duration.ofMillis(500);
+
+    private Duration maxIdleTime = Duration.ofSeconds(30);
+
+    /**
+     * Percentage of failed calls in the sliding window that opens the circuit breaker.
+     */
+    private float failureRateThreshold = 50;
+
+    private int slidingWindowSize = 20;
+
+    private int minimumNumberOfCalls = 10;
+
+    private Duration waitInOpenState = Duration.ofSeconds(10);
+
+    private int permittedCallsInHalfOpenState = 3;
+
+    /**
+     * How many (uri, unique) view counts are remembered to answer stats while the service is unavailable.
+     */
+    private long fallbackCacheSize = 10_000;
+
+    private Duration fallbackTtl = Duration.ofHours(1);
+
+    /**
+     * Points per node on the consistent hash ring; more points spread uris more evenly across nodes.
+     */
+    private int virtualNodes = 160;
+}
@@ -0,0 +1,67 @@
+package ru.practicum.statistics.client;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Read-only view counts keyed by entity id, held in two sorted primitive arrays.
+ */
+public final class ViewCounts {
+    private static final ViewCounts EMPTY = new ViewCounts(new long[0], new long[0], false);
+
+    private final long[] ids;
+    private final long[] counts;
+    private final boolean fallback;
+
+    private ViewCounts(long[] ids, long[] counts, boolean fallback) {
+        this.ids = ids;
+        this.counts = counts;
+        this.fallback = fallback;
+    }
+
+    public static ViewCounts empty() {
+        return EMPTY;
+    }
+
+    static ViewCounts of(Map<Long, Long> views, boolean fallback) {
+        if ((views == null || views.isEmpty()) && !fallback) {
+            return EMPTY;
+        }
+
+        if (views == null) {
+            views = Map.of();
+        }
+
+        long[] ids = views.keySet().stream()
+                .mapToLong(Long::longValue)
+                .sorted()
+                .toArray();
+        long[] counts = new long[ids.length];
+
+        for (int i = 0; i < ids.length; i++) {
+            counts[i] = views.get(ids[i]);
+        }
+
+        return new ViewCounts(ids, counts, fallback);
+    }
+
+    /**
+     * Returns the count for the id or 0 if it has no views.
+     */
+    public long get(long id) {
+        int index = Arrays.binarySearch(ids, id);
+
+        return index < 0 ? 0 : counts[index];
+    }
+
+    /**
+     * Whether the service could not be reached and these are the last counts received instead.
+     */
+    public boolean isFallback() {
+        return fallback;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+}
@@ -0,0 +1,6 @@
+package ru.practicum.statistics.client;
+
+public enum WireFormat {
+    JSON,
+    CBOR
+}
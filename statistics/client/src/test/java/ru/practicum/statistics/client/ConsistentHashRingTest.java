@@ -0,0 +1,93 @@
+package ru.practicum.statistics.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistentHashRingTest {
+    private static final int VIRTUAL_NODES = 160;
+    private static final int KEYS = 100_000;
+
+    @Test
+    void addingANodeMovesAboutOneNthOfTheKeysAllToTheNewNode() {
+        for (int nodes = 2; nodes <= 8; nodes++) {
+            ConsistentHashRing<String> before = ring(nodes);
+            ConsistentHashRing<String> after = ring(nodes + 1);
+            String added = url(nodes);
+            int moved = 0;
+
+            for (int i = 0; i < KEYS; i++) {
+                String key = uri(i);
+                String owner = after.get(key);
+
+                if (!owner.equals(before.get(key))) {
+                    assertEquals(added, owner, "a key moved between two existing nodes");
+                    moved++;
+                }
+            }
+
+            double expected = 1.0 / (nodes + 1);
+
+            assertEquals(expected, (double) moved / KEYS, expected * 0.25,
+                    "share of keys moved when growing to " + (nodes + 1) + " nodes");
+        }
+    }
+
+    @Test
+    void spreadsKeysEvenlyOverTheNodes() {
+        int nodes = 4;
+        ConsistentHashRing<String> ring = ring(nodes);
+        Map<String, Integer> keys = new HashMap<>();
+
+        for (int i = 0; i < KEYS; i++) {
+            keys.merge(ring.get(uri(i)), 1, Integer::sum);
+        }
+
+        assertEquals(nodes, keys.size());
+        keys.values().forEach(count -> assertEquals(KEYS / nodes, count, KEYS / nodes * 0.2));
+    }
+
+    @Test
+    void doesNotDependOnTheOrderOfTheNodes() {
+        Map<String, String> reversed = new LinkedHashMap<>();
+
+        for (String url : List.of(url(2), url(1), url(0))) {
+            reversed.put(url, url);
+        }
+
+        ConsistentHashRing<String> ring = ring(3);
+        ConsistentHashRing<String> other = new ConsistentHashRing<>(reversed, VIRTUAL_NODES);
+
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(ring.get(uri(i)), other.get(uri(i)));
+        }
+    }
+
+    @Test
+    void rejectsAnEmptyRing() {
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing<>(Map.of(), VIRTUAL_NODES));
+    }
+
+    private static ConsistentHashRing<String> ring(int nodes) {
+        Map<String, String> urls = new LinkedHashMap<>();
+
+        for (int i = 0; i < nodes; i++) {
+            urls.put(url(i), url(i));
+        }
+
+        return new ConsistentHashRing<>(urls, VIRTUAL_NODES);
+    }
+
+    private static String url(int node) {
+        return "http://stats-" + node + ":9090";
+    }
+
+    private static String uri(int i) {
+        return "/events/" + i;
+    }
+}
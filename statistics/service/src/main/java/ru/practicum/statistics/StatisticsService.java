@@ -2,8 +2,10 @@ package ru.practicum.statistics;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class StatisticsService {
     public static void main(String[] args) {
         SpringApplication.run(StatisticsService.class, args);
@@ -0,0 +1,27 @@
+package ru.practicum.statistics.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "statistics.compaction")
+public class HitCompactionProperties {
+
+    /**
+     * Replace raw hits of whole days older than {@link #after} with their rollups and delete them.
+     */
+    private boolean enabled = false;
+
+    private Duration after = Duration.ofDays(28);
+
+    /**
+     * Days compacted by one run, so that a long backlog is worked off in steps.
+     */
+    private int maxDaysPerRun = 7;
+}
@@ -0,0 +1,28 @@
+package ru.practicum.statistics.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "statistics.dedup")
+public class HitDedupProperties {
+
+    /**
+     * Store only the first hit of an (app, uri, ip) within the window as a raw row and count its repeats in memory.
+     * Repeats not stored yet are lost if the process dies.
+     */
+    private boolean enabled = false;
+
+    private Duration window = Duration.ofMinutes(30);
+
+    /**
+     * Keys tracked at once; hits of further keys are stored as raw rows.
+     */
+    private int maximumKeys = 1_000_000;
+}
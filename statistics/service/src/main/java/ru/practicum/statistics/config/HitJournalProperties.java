@@ -0,0 +1,34 @@
+package ru.practicum.statistics.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "statistics.journal")
+public class HitJournalProperties {
+
+    /**
+     * Acknowledge hits once they are in the local journal and load them into the database in the background.
+     */
+    private boolean enabled = false;
+
+    private String directory = "journal";
+
+    private int segmentSize = 64 * 1024 * 1024;
+
+    /**
+     * A non-empty active segment is sealed after this long even if it is not full.
+     */
+    private Duration sealAfter = Duration.ofSeconds(1);
+
+    /**
+     * Force every append to disk before acknowledging it.
+     */
+    private boolean fsync = true;
+}
@@ -0,0 +1,39 @@
+package ru.practicum.statistics.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "statistics.partition")
+public class HitPartitionProperties {
+
+    /**
+     * Width of one hit partition, DAYS or MONTHS.
+     */
+    private ChronoUnit interval = ChronoUnit.DAYS;
+
+    /**
+     * How many partitions past the current one are kept created in advance.
+     */
+    private int ahead = 7;
+
+    /**
+     * Partitions that end before now minus this period are removed, along with the rollups, sketches
+     * and visitors of the same time; zero keeps everything.
+     */
+    private Duration retention = Duration.ZERO;
+
+    private RetentionAction retentionAction = RetentionAction.DROP;
+
+    public enum RetentionAction {
+        DROP,
+        DETACH
+    }
+}
@@ -0,0 +1,35 @@
+package ru.practicum.statistics.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "statistics.cache")
+public class StatsCacheProperties {
+
+    private boolean enabled = true;
+
+    private long maximumSize = 10_000;
+
+    /**
+     * Entries are evicted this long after they were computed.
+     */
+    private Duration ttl = Duration.ofMinutes(5);
+
+    /**
+     * Queries whose end falls into the same bucket share an entry. Zero keys on the exact end.
+     */
+    private Duration endBucket = Duration.ofMinutes(1);
+
+    /**
+     * How long an entry may still be served after a hit for one of its uris was written.
+     * Zero invalidates on every such write.
+     */
+    private Duration maxStaleness = Duration.ofSeconds(5);
+}
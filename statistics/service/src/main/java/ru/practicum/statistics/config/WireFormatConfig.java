@@ -0,0 +1,19 @@
+package ru.practicum.statistics.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import ru.practicum.statistics.wire.StatisticsCbor;
+
+/**
+ * Lets clients send hits and read stats as CBOR. The converter takes the place of Spring's default
+ * CBOR converter, which comes after the JSON one, so JSON stays the default for other consumers.
+ */
+@Configuration
+public class WireFormatConfig {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter() {
+        return new MappingJackson2CborHttpMessageConverter(StatisticsCbor.createObjectMapper());
+    }
+}
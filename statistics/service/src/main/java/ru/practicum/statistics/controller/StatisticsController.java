@@ -7,12 +7,16 @@ import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.statistics.dto.RequestHitDto;
 import ru.practicum.statistics.dto.ResponseHitDto;
+import ru.practicum.statistics.dto.StatsQueryDto;
 import ru.practicum.statistics.service.StatisticsService;
 
 import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Positive;
 import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import static ru.practicum.util.constant.Constants.DATE_TIME_FORMAT;
 
@@ -25,14 +29,55 @@ public class StatisticsController {
     @PostMapping("/hit")
     @ResponseStatus(HttpStatus.CREATED)
     public RequestHitDto createHit(@RequestBody @Valid RequestHitDto hitDto) {
+        StatsRequestValidator.validateIps(List.of(hitDto));
+
         return service.createHit(hitDto);
     }
 
+    @PostMapping("/hits/batch")
+    @ResponseStatus(HttpStatus.CREATED)
+    public void createHits(@RequestBody @NotEmpty List<@Valid RequestHitDto> hitDtos) {
+        StatsRequestValidator.validateIps(hitDtos);
+        service.createHits(hitDtos);
+    }
+
     @GetMapping("/stats")
     public Collection<ResponseHitDto> getStats(@RequestParam @DateTimeFormat(fallbackPatterns = DATE_TIME_FORMAT) LocalDateTime start,
                                                @RequestParam @DateTimeFormat(fallbackPatterns = DATE_TIME_FORMAT) LocalDateTime end,
                                                @RequestParam(required = false) List<String> uris,
-                                               @RequestParam(defaultValue = "false") boolean unique) {
-        return service.getStats(start, end, uris, unique);
+                                               @RequestParam(defaultValue = "false") boolean unique,
+                                               @RequestParam(defaultValue = "exact") String precision) {
+        return service.getStats(start, end, uris, unique, StatsRequestValidator.toPrecision(precision));
+    }
+
+    @PostMapping("/stats/query")
+    public Collection<ResponseHitDto> queryStats(@RequestBody @Valid StatsQueryDto query) {
+        return service.getStats(query.getStart(), query.getEnd(), query.getUris(), query.isUnique(), query.getPrecision());
+    }
+
+    @GetMapping("/stats/count")
+    public long getCount(@RequestParam @DateTimeFormat(fallbackPatterns = DATE_TIME_FORMAT) LocalDateTime start,
+                         @RequestParam @DateTimeFormat(fallbackPatterns = DATE_TIME_FORMAT) LocalDateTime end,
+                         @RequestParam String uri,
+                         @RequestParam(defaultValue = "false") boolean unique) {
+        return service.getCount(start, end, uri, unique);
+    }
+
+    @GetMapping("/stats/top")
+    public Collection<ResponseHitDto> getTop(@RequestParam @DateTimeFormat(fallbackPatterns = DATE_TIME_FORMAT) LocalDateTime start,
+                                             @RequestParam @DateTimeFormat(fallbackPatterns = DATE_TIME_FORMAT) LocalDateTime end,
+                                             @RequestParam(defaultValue = "10") @Positive int n,
+                                             @RequestParam(required = false) String prefix,
+                                             @RequestParam(defaultValue = "approx") String precision) {
+        return service.getTop(start, end, n, prefix, StatsRequestValidator.toPrecision(precision));
+    }
+
+    @GetMapping("/stats/views")
+    public Map<Long, Long> getViews(@RequestParam String entity,
+                                   @RequestParam List<Long> ids,
+                                   @RequestParam(required = false) @DateTimeFormat(fallbackPatterns = DATE_TIME_FORMAT) LocalDateTime start,
+                                   @RequestParam(required = false) @DateTimeFormat(fallbackPatterns = DATE_TIME_FORMAT) LocalDateTime end,
+                                   @RequestParam(defaultValue = "false") boolean unique) {
+        return service.getViews(entity, ids, start, end, unique);
     }
 }
@@ -0,0 +1,35 @@
+package ru.practicum.statistics.controller;
+
+import lombok.experimental.UtilityClass;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import ru.practicum.statistics.dto.RequestHitDto;
+import ru.practicum.statistics.dto.StatsPrecision;
+import ru.practicum.statistics.mapper.HitCodec;
+
+import java.util.Collection;
+
+/**
+ * Checks of request parameters that bean validation cannot express.
+ */
+@UtilityClass
+public class StatsRequestValidator {
+
+    public StatsPrecision toPrecision(String precision) {
+        for (StatsPrecision value : StatsPrecision.values()) {
+            if (value.name().equalsIgnoreCase(precision)) {
+                return value;
+            }
+        }
+
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown precision: " + precision);
+    }
+
+    public void validateIps(Collection<RequestHitDto> hitDtos) {
+        for (RequestHitDto hitDto : hitDtos) {
+            if (!HitCodec.isValidIp(hitDto.getIp())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Illegal ip address: " + hitDto.getIp());
+            }
+        }
+    }
+}
@@ -3,7 +3,6 @@ package ru.practicum.statistics.entity;
 import lombok.*;
 
 import javax.persistence.*;
-import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "hit", schema = "public")
@@ -15,14 +14,45 @@ import java.time.LocalDateTime;
 public class Hit {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "hit_seq")
+    @SequenceGenerator(name = "hit_seq", sequenceName = "hit_seq", allocationSize = 50)
     private Long id;
 
-    private String app;
-
-    private String uri;
-
-    private String ip;
-
-    private LocalDateTime timestamp;
+    @Column(name = "app_id")
+    private Integer appId;
+
+    @Column(name = "uri_id")
+    private Integer uriId;
+
+    /**
+     * IPv6 or IPv4-mapped IPv6 address, always 16 bytes.
+     */
+    private byte[] ip;
+
+    /**
+     * Epoch milliseconds, the hit's local date-time read as UTC.
+     */
+    private Long timestamp;
+
+    /**
+     * Dictionary id of the type of the viewed entity, if the hit names one.
+     */
+    @Column(name = "entity_type_id")
+    private Integer entityTypeId;
+
+    @Column(name = "entity_id")
+    private Long entityId;
+
+    /**
+     * Number of hits the row stands for: 1 for a raw hit, the repeats of one minute for a deduplicated row.
+     */
+    @Builder.Default
+    private Integer repeats = 1;
+
+    /**
+     * Whether the row holds repeats counted by {@link ru.practicum.statistics.service.HitDeduplicator}
+     * rather than a single raw hit.
+     */
+    @Builder.Default
+    private Boolean deduplicated = false;
 }
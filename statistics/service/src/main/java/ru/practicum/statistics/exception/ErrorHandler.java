@@ -0,0 +1,18 @@
+package ru.practicum.statistics.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.ConstraintViolationException;
+import java.io.IOException;
+
+@RestControllerAdvice
+public class ErrorHandler {
+
+    @ExceptionHandler({ConstraintViolationException.class})
+    public void handleConstraintViolation(ConstraintViolationException e, HttpServletResponse response) throws IOException {
+        response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+    }
+}
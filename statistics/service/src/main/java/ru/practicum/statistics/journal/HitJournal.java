@@ -0,0 +1,244 @@
+package ru.practicum.statistics.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import lombok.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.statistics.config.HitJournalProperties;
+import ru.practicum.statistics.entity.Hit;
+import ru.practicum.statistics.repository.HitCount;
+import ru.practicum.statistics.repository.HitJournalCheckpointRepository;
+import ru.practicum.statistics.service.HitWriter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Append-only hit journal on memory-mapped segment files.
+ * Sealed segments are loaded into the hit table in the background, and the id of the last loaded segment
+ * is stored in the same transaction, so after a crash every segment is loaded exactly once.
+ * Hits that are journaled but not loaded yet are kept in memory for total counts; unique counts only see
+ * loaded hits, which lag the journal by at most the seal and load intervals.
+ */
+@Slf4j
+@Component
+public class HitJournal {
+    private final HitJournalProperties properties;
+    private final HitJournalCheckpointRepository checkpointRepository;
+    private final HitWriter hitWriter;
+    private final TransactionTemplate transactionTemplate;
+    private final Deque<JournalSegment> sealed = new ConcurrentLinkedDeque<>();
+    private final Map<Long, Queue<Hit>> pending = new ConcurrentSkipListMap<>();
+    private final ReadWriteLock loadLock = new ReentrantReadWriteLock();
+    private final Object appendMonitor = new Object();
+    private final Object loadMonitor = new Object();
+    private Path directory;
+    private JournalSegment active;
+    private long activeSince;
+
+    public HitJournal(HitJournalProperties properties,
+                      HitJournalCheckpointRepository checkpointRepository,
+                      HitWriter hitWriter,
+                      PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.checkpointRepository = checkpointRepository;
+        this.hitWriter = hitWriter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    @PostConstruct
+    public void recover() {
+        if (!isEnabled()) {
+            return;
+        }
+
+        directory = Paths.get(properties.getDirectory());
+        long loaded = checkpointRepository.getLoadedSegment();
+        long lastId = loaded;
+
+        try {
+            Files.createDirectories(directory);
+
+            List<Path> files;
+
+            try (Stream<Path> stream = Files.list(directory)) {
+                files = stream.filter(path -> path.getFileName().toString().endsWith(JournalSegment.SUFFIX))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+
+            for (Path file : files) {
+                JournalSegment segment = JournalSegment.open(file);
+                lastId = Math.max(lastId, segment.getId());
+
+                if (segment.getId() <= loaded) {
+                    segment.delete();
+                } else {
+                    pending.put(segment.getId(), new ConcurrentLinkedQueue<>(segment.readAll()));
+                    sealed.add(segment);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        log.info("Recovered {} unloaded journal segments", sealed.size());
+        openSegment(lastId + 1);
+    }
+
+    public void append(List<Hit> hits) {
+        synchronized (appendMonitor) {
+            for (Hit hit : hits) {
+                if (!active.append(hit)) {
+                    seal();
+                    active.append(hit);
+                }
+
+                pending.get(active.getId()).add(hit);
+            }
+
+            if (properties.isFsync()) {
+                active.force();
+            }
+        }
+    }
+
+    /**
+     * Runs a query so that no segment is loaded while it executes:
+     * a journaled hit is then either in the database or in {@link #getPendingCounts}, never in both.
+     */
+    public <T> T read(Supplier<T> query) {
+        loadLock.readLock().lock();
+
+        try {
+            return query.get();
+        } finally {
+            loadLock.readLock().unlock();
+        }
+    }
+
+    public List<HitCount> getPendingCounts(long start, long end, List<Integer> uriIds) {
+        Set<Integer> uriIdSet = uriIds == null ? null : Set.copyOf(uriIds);
+        Map<PendingKey, Long> counts = new HashMap<>();
+
+        pending.values().forEach(hits -> hits.stream()
+                .filter(hit -> hit.getTimestamp() >= start && hit.getTimestamp() <= end)
+                .filter(hit -> uriIdSet == null || uriIdSet.contains(hit.getUriId()))
+                .forEach(hit -> counts.merge(new PendingKey(hit.getAppId(), hit.getUriId()), 1L, Long::sum)));
+
+        return counts.entrySet().stream()
+                .map(e -> new HitCount(e.getKey().getAppId(), e.getKey().getUriId(), e.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Counts journaled views of the entities not loaded yet, over a range with an exclusive end.
+     */
+    public Map<Long, Long> getPendingViews(int entityTypeId, Collection<Long> entityIds, long start, long end) {
+        Set<Long> ids = Set.copyOf(entityIds);
+        Map<Long, Long> views = new HashMap<>();
+
+        pending.values().forEach(hits -> hits.stream()
+                .filter(hit -> hit.getEntityId() != null && ids.contains(hit.getEntityId()))
+                .filter(hit -> hit.getEntityTypeId() == entityTypeId)
+                .filter(hit -> hit.getTimestamp() >= start && hit.getTimestamp() < end)
+                .forEach(hit -> views.merge(hit.getEntityId(), 1L, Long::sum)));
+
+        return views;
+    }
+
+    @Scheduled(fixedDelayString = "${statistics.journal.load-interval:500}")
+    public void load() {
+        if (!isEnabled()) {
+            return;
+        }
+
+        synchronized (appendMonitor) {
+            if (System.currentTimeMillis() - activeSince >= properties.getSealAfter().toMillis()) {
+                seal();
+            }
+        }
+
+        synchronized (loadMonitor) {
+            JournalSegment segment;
+
+            while ((segment = sealed.peek()) != null) {
+                loadSegment(segment);
+                sealed.poll();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (isEnabled()) {
+            synchronized (appendMonitor) {
+                active.force();
+            }
+        }
+    }
+
+    private void loadSegment(JournalSegment segment) {
+        List<Hit> hits = segment.readAll();
+
+        loadLock.writeLock().lock();
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                hitWriter.write(hits);
+                checkpointRepository.saveLoadedSegment(segment.getId());
+            });
+
+            pending.remove(segment.getId());
+        } finally {
+            loadLock.writeLock().unlock();
+        }
+
+        segment.delete();
+    }
+
+    private void seal() {
+        if (active.getRecords() == 0) {
+            activeSince = System.currentTimeMillis();
+            return;
+        }
+
+        active.force();
+        sealed.add(active);
+        openSegment(active.getId() + 1);
+    }
+
+    private void openSegment(long id) {
+        active = JournalSegment.create(directory, id, properties.getSegmentSize());
+        activeSince = System.currentTimeMillis();
+        pending.put(id, new ConcurrentLinkedQueue<>());
+    }
+
+    @Value
+    private static class PendingKey {
+        int appId;
+        int uriId;
+    }
+}
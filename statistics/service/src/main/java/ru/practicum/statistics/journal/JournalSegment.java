@@ -0,0 +1,157 @@
+package ru.practicum.statistics.journal;
+
+import ru.practicum.statistics.entity.Hit;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * One memory-mapped journal file of fixed-width hit records.
+ * A record is a one-byte commit marker followed by app id, uri id, 16-byte ip, epoch millis,
+ * entity type id and entity id (zeros for none) and a CRC32 of those fields. The marker is written last, so a torn record is never read back.
+ */
+class JournalSegment {
+    static final String SUFFIX = ".journal";
+
+    private static final byte COMMITTED = 1;
+    private static final int IP_LENGTH = 16;
+    private static final int ENTITY_OFFSET = 1 + Integer.BYTES * 2 + IP_LENGTH + Long.BYTES;
+    private static final int PAYLOAD_SIZE = Integer.BYTES * 3 + IP_LENGTH + Long.BYTES * 2;
+    static final int RECORD_SIZE = 1 + PAYLOAD_SIZE + Integer.BYTES;
+
+    private final long id;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private int records;
+
+    private JournalSegment(long id, Path path, MappedByteBuffer buffer) {
+        this.id = id;
+        this.path = path;
+        this.buffer = buffer;
+    }
+
+    static JournalSegment create(Path directory, long id, int size) {
+        return map(id, directory.resolve(fileName(id)), size);
+    }
+
+    static JournalSegment open(Path path) {
+        String name = path.getFileName().toString();
+        long id = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+
+        try {
+            JournalSegment segment = map(id, path, (int) Files.size(path));
+            segment.records = segment.readAll().size();
+            segment.buffer.position(segment.records * RECORD_SIZE);
+
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    long getId() {
+        return id;
+    }
+
+    int getRecords() {
+        return records;
+    }
+
+    boolean append(Hit hit) {
+        if (buffer.remaining() < RECORD_SIZE) {
+            return false;
+        }
+
+        int start = buffer.position();
+        buffer.position(start + 1);
+        buffer.putInt(hit.getAppId());
+        buffer.putInt(hit.getUriId());
+        buffer.put(hit.getIp());
+        buffer.putLong(hit.getTimestamp());
+        buffer.putInt(hit.getEntityTypeId() == null ? 0 : hit.getEntityTypeId());
+        buffer.putLong(hit.getEntityId() == null ? 0 : hit.getEntityId());
+        buffer.putInt(checksum(start));
+        buffer.put(start, COMMITTED);
+        records++;
+
+        return true;
+    }
+
+    List<Hit> readAll() {
+        List<Hit> hits = new ArrayList<>();
+
+        for (int start = 0; start + RECORD_SIZE <= buffer.capacity(); start += RECORD_SIZE) {
+            if (buffer.get(start) != COMMITTED) {
+                break;
+            }
+
+            int crc = buffer.getInt(start + 1 + PAYLOAD_SIZE);
+
+            if (crc != checksum(start)) {
+                break;
+            }
+
+            byte[] ip = new byte[IP_LENGTH];
+
+            for (int i = 0; i < IP_LENGTH; i++) {
+                ip[i] = buffer.get(start + 1 + Integer.BYTES * 2 + i);
+            }
+
+            int entityTypeId = buffer.getInt(start + ENTITY_OFFSET);
+
+            hits.add(Hit.builder()
+                    .appId(buffer.getInt(start + 1))
+                    .uriId(buffer.getInt(start + 1 + Integer.BYTES))
+                    .ip(ip)
+                    .timestamp(buffer.getLong(start + 1 + Integer.BYTES * 2 + IP_LENGTH))
+                    .entityTypeId(entityTypeId == 0 ? null : entityTypeId)
+                    .entityId(entityTypeId == 0 ? null : buffer.getLong(start + ENTITY_OFFSET + Integer.BYTES))
+                    .build());
+        }
+
+        return hits;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void delete() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int checksum(int start) {
+        CRC32 crc = new CRC32();
+
+        for (int i = start + 1; i < start + 1 + PAYLOAD_SIZE; i++) {
+            crc.update(buffer.get(i));
+        }
+
+        return (int) crc.getValue();
+    }
+
+    private static JournalSegment map(long id, Path path, int size) {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+             FileChannel channel = file.getChannel()) {
+            return new JournalSegment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String fileName(long id) {
+        return String.format("%020d%s", id, SUFFIX);
+    }
+}
@@ -0,0 +1,104 @@
+package ru.practicum.statistics.mapper;
+
+import lombok.experimental.UtilityClass;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+@UtilityClass
+public class HitCodec {
+    private static final int IP_LENGTH = 16;
+    private static final int IPV4_OFFSET = 12;
+
+    public long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    public LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+    }
+
+    public byte[] encodeIp(String ip) {
+        byte[] address = ip.indexOf(':') >= 0 ? parseIpv6(ip) : parseIpv4(ip);
+
+        if (address.length == IP_LENGTH) {
+            return address;
+        }
+
+        byte[] mapped = new byte[IP_LENGTH];
+        mapped[10] = (byte) 0xff;
+        mapped[11] = (byte) 0xff;
+        System.arraycopy(address, 0, mapped, IPV4_OFFSET, address.length);
+
+        return mapped;
+    }
+
+    public boolean isValidIp(String ip) {
+        try {
+            encodeIp(ip);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    public String decodeIp(byte[] ip) {
+        if (isIpv4Mapped(ip)) {
+            return (ip[12] & 0xff) + "." + (ip[13] & 0xff) + "." + (ip[14] & 0xff) + "." + (ip[15] & 0xff);
+        }
+
+        try {
+            return InetAddress.getByAddress(ip).getHostAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Illegal stored ip address", e);
+        }
+    }
+
+    private boolean isIpv4Mapped(byte[] ip) {
+        for (int i = 0; i < 10; i++) {
+            if (ip[i] != 0) {
+                return false;
+            }
+        }
+
+        return ip[10] == (byte) 0xff && ip[11] == (byte) 0xff;
+    }
+
+    private byte[] parseIpv4(String ip) {
+        String[] octets = ip.split("\\.", -1);
+
+        if (octets.length != 4) {
+            throw new IllegalArgumentException("Illegal ip address: " + ip);
+        }
+
+        byte[] address = new byte[4];
+
+        for (int i = 0; i < octets.length; i++) {
+            try {
+                int octet = Integer.parseInt(octets[i]);
+
+                if (octet < 0 || octet > 255 || octets[i].startsWith("+")) {
+                    throw new IllegalArgumentException("Illegal ip address: " + ip);
+                }
+
+                address[i] = (byte) octet;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Illegal ip address: " + ip);
+            }
+        }
+
+        return address;
+    }
+
+    private byte[] parseIpv6(String ip) {
+        // A literal with a colon is parsed in place, getByName does no name lookup for it.
+        try {
+            return InetAddress.getByName(ip).getAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Illegal ip address: " + ip);
+        }
+    }
+}
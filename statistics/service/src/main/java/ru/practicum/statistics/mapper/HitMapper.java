@@ -1,26 +1,48 @@
 package ru.practicum.statistics.mapper;
 
-import lombok.experimental.UtilityClass;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
 import ru.practicum.statistics.dto.RequestHitDto;
+import ru.practicum.statistics.dto.ResponseHitDto;
 import ru.practicum.statistics.entity.Hit;
+import ru.practicum.statistics.repository.HitCount;
+import ru.practicum.statistics.service.HitDictionary;
 
-@UtilityClass
+@Component
+@RequiredArgsConstructor
 public class HitMapper {
+    private final HitDictionary dictionary;
+
     public Hit toHitEntityFromRequestHitDto(RequestHitDto hitDto) {
+        byte[] ip = HitCodec.encodeIp(hitDto.getIp());
+
+        boolean hasEntity = hitDto.getEntityType() != null && hitDto.getEntityId() != null;
+
         return Hit.builder()
-                .app(hitDto.getApp())
-                .uri(hitDto.getUri())
-                .ip(hitDto.getIp())
-                .timestamp(hitDto.getTimestamp())
+                .appId(dictionary.getOrCreateAppId(hitDto.getApp()))
+                .uriId(dictionary.getOrCreateUriId(hitDto.getUri()))
+                .ip(ip)
+                .timestamp(HitCodec.toEpochMillis(hitDto.getTimestamp()))
+                .entityTypeId(hasEntity ? dictionary.getOrCreateEntityTypeId(hitDto.getEntityType()) : null)
+                .entityId(hasEntity ? hitDto.getEntityId() : null)
                 .build();
     }
 
     public RequestHitDto toRequestHitDto(Hit entity) {
         return RequestHitDto.builder()
-                .app(entity.getApp())
-                .uri(entity.getUri())
-                .ip(entity.getIp())
-                .timestamp(entity.getTimestamp())
+                .app(dictionary.getApp(entity.getAppId()))
+                .uri(dictionary.getUri(entity.getUriId()))
+                .ip(HitCodec.decodeIp(entity.getIp()))
+                .timestamp(HitCodec.toLocalDateTime(entity.getTimestamp()))
+                .entityType(entity.getEntityTypeId() == null ? null : dictionary.getEntityType(entity.getEntityTypeId()))
+                .entityId(entity.getEntityId())
                 .build();
     }
+
+    public ResponseHitDto toResponseHitDto(HitCount count) {
+        return new ResponseHitDto(dictionary.getApp(count.getAppId()),
+                dictionary.getUri(count.getUriId()),
+                count.getHits(),
+                count.getError());
+    }
 }
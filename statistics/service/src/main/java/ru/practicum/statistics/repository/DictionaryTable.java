@@ -0,0 +1,15 @@
+package ru.practicum.statistics.repository;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum DictionaryTable {
+    APP("app", "name"),
+    URI("uri", "value"),
+    ENTITY_TYPE("entity_type", "name");
+
+    private final String table;
+    private final String column;
+}
@@ -0,0 +1,62 @@
+package ru.practicum.statistics.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+@RequiredArgsConstructor
+public class HitCompactionRepository {
+    static final String WATERMARK_SQL = "SELECT compacted_before FROM hit_compaction_watermark WHERE id = 1";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Epoch millis before which raw hits have been compacted away, 0 if none have.
+     */
+    public long getWatermark() {
+        List<Long> watermarks = jdbcTemplate.queryForList(WATERMARK_SQL, new MapSqlParameterSource(), Long.class);
+
+        return watermarks.isEmpty() ? 0 : watermarks.get(0);
+    }
+
+    public void saveWatermark(long compactedBefore) {
+        jdbcTemplate.update("INSERT INTO hit_compaction_watermark (id, compacted_before) VALUES (1, :compactedBefore) " +
+                        "ON CONFLICT (id) DO UPDATE SET compacted_before = EXCLUDED.compacted_before",
+                new MapSqlParameterSource("compactedBefore", compactedBefore));
+    }
+
+    public Optional<Long> findFirstRawTimestamp() {
+        return Optional.ofNullable(jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM hit",
+                new MapSqlParameterSource(), Long.class));
+    }
+
+    /**
+     * Keeps the entity views of a day as one row per (entity, ip) with its hit count.
+     */
+    public void compactEntityViews(LocalDate day, long from, long to) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("day", day)
+                .addValue("from", from)
+                .addValue("to", to);
+
+        jdbcTemplate.update("INSERT INTO hit_entity_view (entity_type_id, entity_id, day, ip, hits) " +
+                "SELECT entity_type_id, entity_id, :day, ip, SUM(repeats) " +
+                "FROM hit " +
+                "WHERE entity_id IS NOT NULL AND timestamp >= :from AND timestamp < :to " +
+                "GROUP BY entity_type_id, entity_id, ip " +
+                "ON CONFLICT (entity_type_id, entity_id, day, ip) DO UPDATE SET hits = EXCLUDED.hits", parameters);
+    }
+
+    public int deleteRaw(long from, long to) {
+        return jdbcTemplate.update("DELETE FROM hit WHERE timestamp >= :from AND timestamp < :to",
+                new MapSqlParameterSource()
+                        .addValue("from", from)
+                        .addValue("to", to));
+    }
+}
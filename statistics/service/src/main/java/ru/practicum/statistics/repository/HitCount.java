@@ -0,0 +1,21 @@
+package ru.practicum.statistics.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+@Value
+@AllArgsConstructor
+public class HitCount {
+    Integer appId;
+    Integer uriId;
+    Long hits;
+
+    /**
+     * Relative standard error when {@link #hits} is an estimate, null for exact counts.
+     */
+    Double error;
+
+    public HitCount(Integer appId, Integer uriId, Long hits) {
+        this(appId, uriId, hits, null);
+    }
+}
@@ -0,0 +1,48 @@
+package ru.practicum.statistics.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+@RequiredArgsConstructor
+public class HitDictionaryRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public Integer findId(DictionaryTable table, String value) {
+        List<Integer> ids = jdbcTemplate.queryForList("SELECT id FROM " + table.getTable() +
+                " WHERE " + table.getColumn() + " = ?", Integer.class, value);
+
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    public String findValue(DictionaryTable table, int id) {
+        List<String> values = jdbcTemplate.queryForList("SELECT " + table.getColumn() + " FROM " + table.getTable() +
+                " WHERE id = ?", String.class, id);
+
+        return values.isEmpty() ? null : values.get(0);
+    }
+
+    /**
+     * Finds entries whose value matches a LIKE pattern with backslash escapes.
+     */
+    public Map<Integer, String> findByPattern(DictionaryTable table, String likePattern) {
+        Map<Integer, String> entries = new HashMap<>();
+
+        jdbcTemplate.query("SELECT id, " + table.getColumn() + " FROM " + table.getTable() +
+                " WHERE " + table.getColumn() + " LIKE ? ESCAPE '\\'", rs -> {
+                    entries.put(rs.getInt(1), rs.getString(2));
+                }, likePattern);
+
+        return entries;
+    }
+
+    public void insertIfAbsent(DictionaryTable table, String value) {
+        jdbcTemplate.update("INSERT INTO " + table.getTable() + " (" + table.getColumn() + ") VALUES (?) " +
+                "ON CONFLICT (" + table.getColumn() + ") DO NOTHING", value);
+    }
+}
@@ -0,0 +1,25 @@
+package ru.practicum.statistics.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class HitJournalCheckpointRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public long getLoadedSegment() {
+        List<Long> segments = jdbcTemplate.queryForList("SELECT segment FROM hit_journal_checkpoint WHERE id = 1",
+                Long.class);
+
+        return segments.isEmpty() ? -1 : segments.get(0);
+    }
+
+    public void saveLoadedSegment(long segment) {
+        jdbcTemplate.update("INSERT INTO hit_journal_checkpoint (id, segment) VALUES (1, ?) " +
+                "ON CONFLICT (id) DO UPDATE SET segment = EXCLUDED.segment", segment);
+    }
+}
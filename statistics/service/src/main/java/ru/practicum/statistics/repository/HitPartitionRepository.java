@@ -0,0 +1,49 @@
+package ru.practicum.statistics.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class HitPartitionRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public List<String> findPartitions() {
+        return jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid " +
+                "JOIN pg_class p ON p.oid = i.inhparent " +
+                "WHERE p.relname = 'hit'", String.class);
+    }
+
+    public void create(String name, long from, long to) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF hit " +
+                "FOR VALUES FROM (" + from + ") TO (" + to + ")");
+    }
+
+    public void drop(String name) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + name);
+    }
+
+    public void detach(String name) {
+        jdbcTemplate.execute("ALTER TABLE hit DETACH PARTITION " + name);
+    }
+
+    /**
+     * Deletes the rollups, sketches, visitors and compacted entity views of the time before the cutoff,
+     * which must be the start of a day. Returns the number of rows deleted.
+     */
+    public int pruneBefore(LocalDateTime cutoff) {
+        LocalDate day = cutoff.toLocalDate();
+
+        return jdbcTemplate.update("DELETE FROM hit_rollup_minute WHERE bucket < ?", cutoff)
+                + jdbcTemplate.update("DELETE FROM hit_rollup_hour WHERE bucket < ?", cutoff)
+                + jdbcTemplate.update("DELETE FROM hit_sketch WHERE bucket < ?", cutoff)
+                + jdbcTemplate.update("DELETE FROM hit_visitor WHERE day < ?", day)
+                + jdbcTemplate.update("DELETE FROM hit_entity_view WHERE day < ?", day);
+    }
+}
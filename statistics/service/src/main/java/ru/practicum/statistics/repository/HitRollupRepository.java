@@ -0,0 +1,97 @@
+package ru.practicum.statistics.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static ru.practicum.statistics.mapper.HitCodec.toEpochMillis;
+
+@Repository
+@RequiredArgsConstructor
+public class HitRollupRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void increment(RollupGranularity granularity, List<RollupIncrement> increments) {
+        String sql = "INSERT INTO " + granularity.getTable() + " (app_id, uri_id, bucket, hits) " +
+                "VALUES (:appId, :uriId, :bucket, :hits) " +
+                "ON CONFLICT (app_id, uri_id, bucket) DO UPDATE SET hits = " + granularity.getTable() + ".hits + EXCLUDED.hits";
+
+        SqlParameterSource[] batch = increments.stream()
+                .map(increment -> new MapSqlParameterSource()
+                        .addValue("appId", increment.getAppId())
+                        .addValue("uriId", increment.getUriId())
+                        .addValue("bucket", increment.getBucket())
+                        .addValue("hits", increment.getHits()))
+                .toArray(SqlParameterSource[]::new);
+
+        jdbcTemplate.batchUpdate(sql, batch);
+    }
+
+    /**
+     * Replaces the buckets from the given one on with counts of the raw hits.
+     */
+    public void recount(RollupGranularity granularity, LocalDateTime from) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("fromMillis", toEpochMillis(from))
+                .addValue("bucketMillis", granularity.getUnit().getDuration().toMillis());
+
+        jdbcTemplate.update("DELETE FROM " + granularity.getTable() + " WHERE bucket >= :from", parameters);
+        jdbcTemplate.update("INSERT INTO " + granularity.getTable() + " (app_id, uri_id, bucket, hits) " +
+                "SELECT app_id, uri_id, " +
+                "to_timestamp((timestamp - timestamp % :bucketMillis) / 1000) AT TIME ZONE 'UTC', SUM(repeats) " +
+                "FROM hit WHERE timestamp >= :fromMillis " +
+                "GROUP BY 1, 2, 3", parameters);
+    }
+
+    public List<HitCount> getHits(RollupGranularity granularity,
+                                  LocalDateTime from,
+                                  LocalDateTime to,
+                                  List<Integer> uriIds) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+
+        String sql = "SELECT app_id, uri_id, SUM(hits) AS hits " +
+                "FROM " + granularity.getTable() + " " +
+                "WHERE bucket >= :from AND bucket < :to ";
+
+        if (uriIds != null) {
+            sql += "AND uri_id = ANY(:uriIds) ";
+            parameters.addValue("uriIds", uriIds.toArray(Integer[]::new));
+        }
+
+        sql += "GROUP BY app_id, uri_id";
+
+        return jdbcTemplate.query(sql, parameters, (rs, rowNum) -> new HitCount(rs.getInt("app_id"),
+                rs.getInt("uri_id"),
+                rs.getLong("hits")));
+    }
+
+    public void forEachBucket(RollupGranularity granularity,
+                              LocalDateTime from,
+                              LocalDateTime to,
+                              BucketCallback callback) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+
+        jdbcTemplate.query("SELECT app_id, uri_id, bucket, hits FROM " + granularity.getTable() + " " +
+                "WHERE bucket >= :from AND bucket < :to", parameters, rs -> {
+                    callback.accept(rs.getInt("app_id"),
+                            rs.getInt("uri_id"),
+                            rs.getTimestamp("bucket").toLocalDateTime(),
+                            rs.getLong("hits"));
+                });
+    }
+
+    @FunctionalInterface
+    public interface BucketCallback {
+        void accept(int appId, int uriId, LocalDateTime bucket, long hits);
+    }
+}
@@ -0,0 +1,119 @@
+package ru.practicum.statistics.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.statistics.sketch.HyperLogLog;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+@RequiredArgsConstructor
+public class HitSketchRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void merge(int appId, int uriId, LocalDateTime bucket, HyperLogLog sketch) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("appId", appId)
+                .addValue("uriId", uriId)
+                .addValue("bucket", bucket);
+
+        List<byte[]> existing = jdbcTemplate.query("SELECT registers FROM hit_sketch " +
+                        "WHERE app_id = :appId AND uri_id = :uriId AND bucket = :bucket FOR UPDATE",
+                parameters,
+                (rs, rowNum) -> rs.getBytes("registers"));
+
+        if (!existing.isEmpty()) {
+            sketch.merge(HyperLogLog.fromBytes(existing.get(0)));
+        }
+
+        jdbcTemplate.update("INSERT INTO hit_sketch (app_id, uri_id, bucket, registers) " +
+                        "VALUES (:appId, :uriId, :bucket, :registers) " +
+                        "ON CONFLICT (app_id, uri_id, bucket) DO UPDATE SET registers = EXCLUDED.registers",
+                parameters.addValue("registers", sketch.toBytes()));
+    }
+
+    public void forEachSketch(LocalDateTime from, LocalDateTime to, List<Integer> uriIds, SketchCallback callback) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+
+        String sql = "SELECT app_id, uri_id, registers FROM hit_sketch WHERE bucket >= :from AND bucket < :to ";
+
+        if (uriIds != null) {
+            sql += "AND uri_id = ANY(:uriIds)";
+            parameters.addValue("uriIds", uriIds.toArray(Integer[]::new));
+        }
+
+        jdbcTemplate.query(sql, parameters, rs -> {
+            callback.accept(rs.getInt("app_id"),
+                    rs.getInt("uri_id"),
+                    HyperLogLog.fromBytes(rs.getBytes("registers")));
+        });
+    }
+
+    public void forEachVisitor(long from,
+                               long to,
+                               boolean inclusiveTo,
+                               List<Integer> uriIds,
+                               VisitorCallback callback) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+
+        String sql = "SELECT DISTINCT app_id, uri_id, ip FROM hit " +
+                "WHERE timestamp >= :from AND timestamp " + (inclusiveTo ? "<=" : "<") + " :to ";
+
+        if (uriIds != null) {
+            sql += "AND uri_id = ANY(:uriIds)";
+            parameters.addValue("uriIds", uriIds.toArray(Integer[]::new));
+        }
+
+        jdbcTemplate.query(sql, parameters, rs -> {
+            callback.accept(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getBytes("ip"));
+        });
+    }
+
+    /**
+     * Streams the distinct visitors of every (app, uri, hour) since from, the hour as epoch millis.
+     */
+    public void forEachHourlyVisitor(long from, HourlyVisitorCallback callback) {
+        jdbcTemplate.query("SELECT DISTINCT app_id, uri_id, timestamp - timestamp % 3600000 AS hour, ip FROM hit " +
+                        "WHERE timestamp >= :from",
+                new MapSqlParameterSource("from", from),
+                rs -> {
+                    callback.accept(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getLong("hour"), rs.getBytes("ip"));
+                });
+    }
+
+    /**
+     * Epoch millis from which hits copied in by a schema migration still have to be sketched, if any.
+     */
+    public Optional<Long> findBackfillFrom() {
+        return jdbcTemplate.queryForList("SELECT sketch_from FROM hit_sketch_backfill WHERE id = 1",
+                        new MapSqlParameterSource(), Long.class).stream()
+                .findFirst();
+    }
+
+    public void deleteBackfill() {
+        jdbcTemplate.update("DELETE FROM hit_sketch_backfill WHERE id = 1", new MapSqlParameterSource());
+    }
+
+    @FunctionalInterface
+    public interface SketchCallback {
+        void accept(int appId, int uriId, HyperLogLog sketch);
+    }
+
+    @FunctionalInterface
+    public interface VisitorCallback {
+        void accept(int appId, int uriId, byte[] ip);
+    }
+
+    @FunctionalInterface
+    public interface HourlyVisitorCallback {
+        void accept(int appId, int uriId, long hour, byte[] ip);
+    }
+}
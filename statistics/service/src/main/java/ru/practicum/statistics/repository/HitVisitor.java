@@ -0,0 +1,17 @@
+package ru.practicum.statistics.repository;
+
+import lombok.Value;
+
+import java.time.LocalDate;
+
+/**
+ * First hit of an ip on a uri during a day.
+ */
+@Value
+public class HitVisitor {
+    int appId;
+    int uriId;
+    LocalDate day;
+    byte[] ip;
+    long firstSeen;
+}
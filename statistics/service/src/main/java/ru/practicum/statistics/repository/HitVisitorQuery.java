@@ -0,0 +1,63 @@
+package ru.practicum.statistics.repository;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.LocalDate;
+
+/**
+ * Exact unique counts over an inclusive millisecond range: whole days are read from hit_visitor
+ * and only the partial days at both ends from raw hits, with one distinct over the union.
+ * Partial days before the compaction watermark have no raw hits left and are read whole from hit_visitor.
+ */
+@Getter
+public class HitVisitorQuery {
+    private static final long DAY_MILLIS = Duration.ofDays(1).toMillis();
+
+    private final long start;
+    private final long end;
+    private final LocalDate fromDay;
+    private final LocalDate toDay;
+    private final long fromMillis;
+    private final long toMillis;
+
+    public HitVisitorQuery(long start, long end, long watermark) {
+        long fromEpochDay = start < watermark
+                ? Math.max(0, Math.floorDiv(start, DAY_MILLIS))
+                : -Math.floorDiv(-start, DAY_MILLIS);
+        long toEpochDay = Math.floorDiv(end, DAY_MILLIS);
+
+        // The day ending exactly at end is whole too.
+        if (end < watermark || (toEpochDay + 1) * DAY_MILLIS - 1 == end) {
+            toEpochDay++;
+        }
+
+        this.start = start;
+        this.end = end;
+        this.fromDay = LocalDate.ofEpochDay(fromEpochDay);
+        this.toDay = LocalDate.ofEpochDay(Math.max(fromEpochDay, toEpochDay));
+        this.fromMillis = fromEpochDay * DAY_MILLIS;
+        this.toMillis = Math.max(fromEpochDay, toEpochDay) * DAY_MILLIS;
+    }
+
+    public boolean hasWholeDays() {
+        return fromDay.isBefore(toDay);
+    }
+
+    /**
+     * Named parameters: start, end, fromDay, toDay, fromMillis, toMillis and, if filtered, uriIds.
+     */
+    public String toSql(boolean filterUris) {
+        String uriFilter = filterUris ? "AND uri_id = ANY(:uriIds) " : "";
+
+        return "SELECT app_id, uri_id, COUNT(DISTINCT ip) AS hits FROM (" +
+                "SELECT app_id, uri_id, ip FROM hit_visitor " +
+                "WHERE day >= :fromDay AND day < :toDay " + uriFilter +
+                "UNION ALL " +
+                "SELECT app_id, uri_id, ip FROM hit " +
+                "WHERE (timestamp >= :start AND timestamp < :fromMillis OR timestamp >= :toMillis AND timestamp <= :end) " +
+                uriFilter +
+                ") visitors " +
+                "GROUP BY app_id, uri_id";
+    }
+}
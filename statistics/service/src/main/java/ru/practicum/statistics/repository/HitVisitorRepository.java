@@ -0,0 +1,35 @@
+package ru.practicum.statistics.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class HitVisitorRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Adds visitors, keeping the earliest first_seen of a visitor written more than once,
+     * e.g. by a deduplicated row or a late batch stored after a later hit of the same day.
+     */
+    public void insert(List<HitVisitor> visitors) {
+        SqlParameterSource[] batch = visitors.stream()
+                .map(visitor -> new MapSqlParameterSource()
+                        .addValue("appId", visitor.getAppId())
+                        .addValue("uriId", visitor.getUriId())
+                        .addValue("day", visitor.getDay())
+                        .addValue("ip", visitor.getIp())
+                        .addValue("firstSeen", visitor.getFirstSeen()))
+                .toArray(SqlParameterSource[]::new);
+
+        jdbcTemplate.batchUpdate("INSERT INTO hit_visitor (app_id, uri_id, day, ip, first_seen) " +
+                "VALUES (:appId, :uriId, :day, :ip, :firstSeen) " +
+                "ON CONFLICT (app_id, uri_id, day, ip) " +
+                "DO UPDATE SET first_seen = LEAST(hit_visitor.first_seen, EXCLUDED.first_seen)", batch);
+    }
+}
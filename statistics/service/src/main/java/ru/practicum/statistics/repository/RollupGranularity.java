@@ -0,0 +1,16 @@
+package ru.practicum.statistics.repository;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.temporal.ChronoUnit;
+
+@Getter
+@RequiredArgsConstructor
+public enum RollupGranularity {
+    MINUTE(ChronoUnit.MINUTES, "hit_rollup_minute"),
+    HOUR(ChronoUnit.HOURS, "hit_rollup_hour");
+
+    private final ChronoUnit unit;
+    private final String table;
+}
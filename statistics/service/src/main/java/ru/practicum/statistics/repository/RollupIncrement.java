@@ -0,0 +1,13 @@
+package ru.practicum.statistics.repository;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+@Value
+public class RollupIncrement {
+    int appId;
+    int uriId;
+    LocalDateTime bucket;
+    long hits;
+}
@@ -0,0 +1,24 @@
+package ru.practicum.statistics.repository;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * One range of a total hits query, answered from a rollup table or, without granularity, from raw hits.
+ */
+@Value
+public class RollupQueryPart {
+    RollupGranularity granularity;
+    LocalDateTime from;
+    LocalDateTime to;
+    boolean inclusiveTo;
+
+    public static RollupQueryPart rollup(RollupGranularity granularity, LocalDateTime from, LocalDateTime to) {
+        return new RollupQueryPart(granularity, from, to, false);
+    }
+
+    public static RollupQueryPart raw(LocalDateTime from, LocalDateTime to, boolean inclusiveTo) {
+        return new RollupQueryPart(null, from, to, inclusiveTo);
+    }
+}
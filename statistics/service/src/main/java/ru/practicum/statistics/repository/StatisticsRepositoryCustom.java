@@ -0,0 +1,36 @@
+package ru.practicum.statistics.repository;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hit counts over raw rows. The uri filter is bound as one Postgres array, so a query with
+ * thousands of uris has the same text and plan as a query with one.
+ */
+public interface StatisticsRepositoryCustom {
+
+    /**
+     * Counts hits with {@code start <= timestamp <= end}.
+     */
+    List<HitCount> getStats(Long start,
+                            Long end,
+                            List<Integer> uriIds,
+                            Boolean unique);
+
+    /**
+     * Counts hits with {@code start <= timestamp < end}.
+     */
+    List<HitCount> getHitCounts(Long start,
+                                Long end,
+                                List<Integer> uriIds);
+
+    /**
+     * Counts hits of the given entities with {@code start <= timestamp < end}, keyed by entity id.
+     * The half-open range lets callers add up counts of consecutive ranges.
+     */
+    Map<Long, Long> getViews(int entityTypeId,
+                             List<Long> entityIds,
+                             long start,
+                             long end,
+                             boolean unique);
+}
@@ -0,0 +1,178 @@
+package ru.practicum.statistics.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static ru.practicum.statistics.mapper.HitCodec.toLocalDateTime;
+
+/**
+ * Counts from raw hits. Ranges reaching before the compaction watermark are completed from the
+ * compacted tables, rounded outwards to their granularity: minutes for totals, days for unique visitors.
+ */
+@RequiredArgsConstructor
+public class StatisticsRepositoryImpl implements StatisticsRepositoryCustom {
+    private static final String TOTAL_RANGE = "timestamp BETWEEN :start AND :end ";
+    private static final String HALF_OPEN_RANGE = "timestamp >= :start AND timestamp < :end ";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<HitCount> getStats(Long start, Long end, List<Integer> uriIds, Boolean unique) {
+        long watermark = getWatermark();
+
+        if (unique) {
+            HitVisitorQuery query = new HitVisitorQuery(start, end, watermark);
+
+            if (query.hasWholeDays()) {
+                return countVisitors(query, uriIds);
+            }
+
+            return count("COUNT(DISTINCT ip)", TOTAL_RANGE, start, end, uriIds);
+        }
+
+        return countTotals(TOTAL_RANGE, start, end, end, uriIds, watermark);
+    }
+
+    @Override
+    public List<HitCount> getHitCounts(Long start, Long end, List<Integer> uriIds) {
+        return countTotals(HALF_OPEN_RANGE, start, end, end - 1, uriIds, getWatermark());
+    }
+
+    @Override
+    public Map<Long, Long> getViews(int entityTypeId, List<Long> entityIds, long start, long end, boolean unique) {
+        long watermark = getWatermark();
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("entityTypeId", entityTypeId)
+                .addValue("entityIds", entityIds.toArray(Long[]::new))
+                .addValue("start", Math.max(start, watermark))
+                .addValue("end", end);
+
+        String raw = "SELECT entity_id, ip, repeats AS hits " +
+                "FROM hit " +
+                "WHERE entity_type_id = :entityTypeId " +
+                "AND entity_id = ANY(:entityIds) " +
+                "AND timestamp >= :start AND timestamp < :end ";
+        String sql = raw;
+
+        if (start < watermark) {
+            LocalDate fromDay = toLocalDateTime(Math.max(start, 0)).toLocalDate();
+            LocalDate toDay = end <= watermark
+                    ? toLocalDateTime(end - 1).toLocalDate().plusDays(1)
+                    : toLocalDateTime(watermark).toLocalDate();
+
+            parameters.addValue("fromDay", fromDay)
+                    .addValue("toDay", toDay);
+            sql = "SELECT entity_id, ip, hits " +
+                    "FROM hit_entity_view " +
+                    "WHERE entity_type_id = :entityTypeId " +
+                    "AND entity_id = ANY(:entityIds) " +
+                    "AND day >= :fromDay AND day < :toDay " +
+                    "UNION ALL " + raw;
+        }
+
+        Map<Long, Long> views = new HashMap<>();
+
+        jdbcTemplate.query("SELECT entity_id, " + (unique ? "COUNT(DISTINCT ip)" : "SUM(hits)") + " AS hits " +
+                "FROM (" + sql + ") views " +
+                "GROUP BY entity_id", parameters, rs -> {
+                    views.put(rs.getLong("entity_id"), rs.getLong("hits"));
+                });
+
+        return views;
+    }
+
+    private long getWatermark() {
+        List<Long> watermarks = jdbcTemplate.queryForList(HitCompactionRepository.WATERMARK_SQL,
+                new MapSqlParameterSource(), Long.class);
+
+        return watermarks.isEmpty() ? 0 : watermarks.get(0);
+    }
+
+    /**
+     * Total hits, with the part of the range before the watermark read from minute rollups.
+     */
+    private List<HitCount> countTotals(String range,
+                                       long start,
+                                       long end,
+                                       long lastIncluded,
+                                       List<Integer> uriIds,
+                                       long watermark) {
+        if (start >= watermark) {
+            return count("SUM(repeats)", range, start, end, uriIds);
+        }
+
+        LocalDateTime fromBucket = toLocalDateTime(start).truncatedTo(ChronoUnit.MINUTES);
+        LocalDateTime toBucket = toLocalDateTime(Math.min(lastIncluded, watermark - 1))
+                .truncatedTo(ChronoUnit.MINUTES)
+                .plusMinutes(1);
+        String uriFilter = uriIds == null ? "" : "AND uri_id = ANY(:uriIds) ";
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("start", start)
+                .addValue("end", end)
+                .addValue("watermark", watermark)
+                .addValue("fromBucket", fromBucket)
+                .addValue("toBucket", toBucket);
+
+        if (uriIds != null) {
+            parameters.addValue("uriIds", uriIds.toArray(Integer[]::new));
+        }
+
+        return jdbcTemplate.query("SELECT app_id, uri_id, SUM(hits) AS hits FROM (" +
+                "SELECT app_id, uri_id, hits FROM hit_rollup_minute " +
+                "WHERE bucket >= :fromBucket AND bucket < :toBucket " + uriFilter +
+                "UNION ALL " +
+                "SELECT app_id, uri_id, repeats AS hits FROM hit " +
+                "WHERE timestamp >= :watermark AND " + range + uriFilter +
+                ") counts " +
+                "GROUP BY app_id, uri_id", parameters, (rs, rowNum) -> new HitCount(rs.getInt("app_id"),
+                rs.getInt("uri_id"),
+                rs.getLong("hits")));
+    }
+
+    private List<HitCount> countVisitors(HitVisitorQuery query, List<Integer> uriIds) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("start", query.getStart())
+                .addValue("end", query.getEnd())
+                .addValue("fromDay", query.getFromDay())
+                .addValue("toDay", query.getToDay())
+                .addValue("fromMillis", query.getFromMillis())
+                .addValue("toMillis", query.getToMillis());
+
+        if (uriIds != null) {
+            parameters.addValue("uriIds", uriIds.toArray(Integer[]::new));
+        }
+
+        return jdbcTemplate.query(query.toSql(uriIds != null), parameters, (rs, rowNum) -> new HitCount(rs.getInt("app_id"),
+                rs.getInt("uri_id"),
+                rs.getLong("hits")));
+    }
+
+    private List<HitCount> count(String aggregate, String range, Long start, Long end, List<Integer> uriIds) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("start", start)
+                .addValue("end", end);
+
+        String sql = "SELECT app_id, uri_id, " + aggregate + " AS hits " +
+                "FROM hit " +
+                "WHERE " + range;
+
+        if (uriIds != null) {
+            sql += "AND uri_id = ANY(:uriIds) ";
+            parameters.addValue("uriIds", uriIds.toArray(Integer[]::new));
+        }
+
+        sql += "GROUP BY app_id, uri_id";
+
+        return jdbcTemplate.query(sql, parameters, (rs, rowNum) -> new HitCount(rs.getInt("app_id"),
+                rs.getInt("uri_id"),
+                rs.getLong("hits")));
+    }
+}
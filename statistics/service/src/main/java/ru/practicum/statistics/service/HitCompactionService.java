@@ -0,0 +1,85 @@
+package ru.practicum.statistics.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.statistics.config.HitCompactionProperties;
+import ru.practicum.statistics.repository.HitCompactionRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static ru.practicum.statistics.mapper.HitCodec.toEpochMillis;
+import static ru.practicum.statistics.mapper.HitCodec.toLocalDateTime;
+
+/**
+ * Deletes raw hits of old whole days once nothing needs them any more.
+ * Minute and hour rollups, hour sketches and daily visitors are already written on ingest;
+ * entity views are kept per (entity, day, ip) in hit_entity_view. The watermark moves forward
+ * in the same transaction, so queries read compacted data exactly for the days that no longer have raw hits.
+ */
+@Slf4j
+@Component
+public class HitCompactionService {
+    private final HitCompactionRepository compactionRepository;
+    private final HitPartitionService partitionService;
+    private final HitCompactionProperties properties;
+    private final TransactionTemplate transactionTemplate;
+
+    public HitCompactionService(HitCompactionRepository compactionRepository,
+                                HitPartitionService partitionService,
+                                HitCompactionProperties properties,
+                                PlatformTransactionManager transactionManager) {
+        this.compactionRepository = compactionRepository;
+        this.partitionService = partitionService;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(initialDelayString = "${statistics.compaction.check-interval:3600000}",
+            fixedDelayString = "${statistics.compaction.check-interval:3600000}")
+    public void compact() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        LocalDate before = LocalDateTime.now().minus(properties.getAfter()).toLocalDate();
+        Optional<LocalDate> next = nextDay();
+
+        for (int i = 0; i < properties.getMaxDaysPerRun() && next.isPresent() && next.get().isBefore(before); i++) {
+            LocalDate day = next.get();
+
+            compactDay(day);
+            next = Optional.of(day.plusDays(1));
+        }
+    }
+
+    private Optional<LocalDate> nextDay() {
+        long watermark = compactionRepository.getWatermark();
+
+        if (watermark > 0) {
+            return Optional.of(toLocalDateTime(watermark).toLocalDate());
+        }
+
+        return compactionRepository.findFirstRawTimestamp()
+                .map(timestamp -> toLocalDateTime(timestamp).toLocalDate());
+    }
+
+    private void compactDay(LocalDate day) {
+        long from = toEpochMillis(day.atStartOfDay());
+        long to = toEpochMillis(day.plusDays(1).atStartOfDay());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            compactionRepository.compactEntityViews(day, from, to);
+            compactionRepository.saveWatermark(to);
+
+            if (!partitionService.dropDay(day)) {
+                int deleted = compactionRepository.deleteRaw(from, to);
+                log.info("Compacted {} raw hits of {}", deleted, day);
+            }
+        });
+    }
+}
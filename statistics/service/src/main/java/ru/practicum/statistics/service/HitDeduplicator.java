@@ -0,0 +1,224 @@
+package ru.practicum.statistics.service;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.statistics.config.HitDedupProperties;
+import ru.practicum.statistics.entity.Hit;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static ru.practicum.statistics.mapper.HitCodec.toEpochMillis;
+
+/**
+ * Ingest-side dedup of repeated (app, uri, ip) hits.
+ * The first hit of a window is stored as a raw row. Repeats inside the window only bump a counter in a
+ * concurrent map, and each minute's repeats are later stored as one row flagged deduplicated whose
+ * repeats column carries the count, so raw totals are SUM(repeats).
+ * Repeats are held in memory only, also when the journal is enabled: they are stored on shutdown, but the
+ * repeats of windows still open when the process dies are lost, up to the flush interval plus the current
+ * minute of every open window. Enable it only where totals may undercount by that much.
+ * A minute never spans two hours or days, so each stored row also records its ip as a visitor of
+ * its own day and hour, covering windows that cross a boundary.
+ */
+@Slf4j
+@Component
+public class HitDeduplicator {
+    private static final long MINUTE_MILLIS = Duration.ofMinutes(1).toMillis();
+
+    private final HitDedupProperties properties;
+    private final HitVisitorService visitorService;
+    private final HitSketchService sketchService;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<DedupKey, Window> windows = new ConcurrentHashMap<>();
+    private final Queue<Hit> ready = new ConcurrentLinkedQueue<>();
+
+    public HitDeduplicator(HitDedupProperties properties,
+                           HitVisitorService visitorService,
+                           HitSketchService sketchService,
+                           EntityManager entityManager,
+                           PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.visitorService = visitorService;
+        this.sketchService = sketchService;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Returns the hits that have to be stored as raw rows; the others are held as repeats.
+     */
+    public List<Hit> filter(List<Hit> hits) {
+        if (!isEnabled()) {
+            return hits;
+        }
+
+        long window = properties.getWindow().toMillis();
+        List<Hit> rows = new ArrayList<>(hits.size());
+
+        for (Hit hit : hits) {
+            DedupKey key = new DedupKey(hit.getAppId(), hit.getUriId(), hit.getIp());
+
+            if (windows.size() >= properties.getMaximumKeys() && !windows.containsKey(key)) {
+                rows.add(hit);
+                continue;
+            }
+
+            boolean[] repeat = new boolean[1];
+
+            windows.compute(key, (k, current) -> {
+                if (current == null || Math.abs(hit.getTimestamp() - current.start) >= window) {
+                    if (current != null) {
+                        current.close(ready);
+                    }
+
+                    return new Window(hit);
+                }
+
+                current.repeat(hit, ready);
+                repeat[0] = true;
+
+                return current;
+            });
+
+            if (!repeat[0]) {
+                rows.add(hit);
+            }
+        }
+
+        return rows;
+    }
+
+    /**
+     * Stores the repeats of minutes that have passed and forgets windows that have expired.
+     */
+    @Scheduled(fixedDelayString = "${statistics.dedup.flush-interval:10000}")
+    public void flush() {
+        if (!isEnabled()) {
+            return;
+        }
+
+        long now = toEpochMillis(LocalDateTime.now());
+        long window = properties.getWindow().toMillis();
+
+        windows.forEach((key, current) -> windows.computeIfPresent(key, (k, w) -> {
+            if (now - w.start >= window) {
+                w.close(ready);
+                return null;
+            }
+
+            if (w.minute < now / MINUTE_MILLIS) {
+                w.close(ready);
+            }
+
+            return w;
+        }));
+
+        store();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!isEnabled()) {
+            return;
+        }
+
+        windows.forEach((key, current) -> windows.computeIfPresent(key, (k, w) -> {
+            w.close(ready);
+            return null;
+        }));
+
+        store();
+    }
+
+    private void store() {
+        List<Hit> rows = new ArrayList<>();
+        Hit row;
+
+        while ((row = ready.poll()) != null) {
+            rows.add(row);
+        }
+
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                rows.forEach(entityManager::persist);
+                visitorService.record(rows);
+            });
+            sketchService.record(rows);
+        } catch (RuntimeException e) {
+            log.warn("Failed to store {} deduplicated rows, retrying later: {}", rows.size(), e.getMessage());
+            ready.addAll(rows);
+        }
+    }
+
+    @Value
+    private static class DedupKey {
+        int appId;
+        int uriId;
+        byte[] ip;
+    }
+
+    /**
+     * Repeats of the current minute of one key's window; only touched under the map's lock for the key.
+     */
+    private static class Window {
+        private final Hit first;
+        private final long start;
+        private long minute;
+        private long last;
+        private int repeats;
+
+        private Window(Hit first) {
+            this.first = first;
+            this.start = first.getTimestamp();
+        }
+
+        private void repeat(Hit hit, Queue<Hit> ready) {
+            long hitMinute = hit.getTimestamp() / MINUTE_MILLIS;
+
+            if (repeats > 0 && hitMinute != minute) {
+                close(ready);
+            }
+
+            minute = hitMinute;
+            last = Math.max(last, hit.getTimestamp());
+            repeats++;
+        }
+
+        private void close(Queue<Hit> ready) {
+            if (repeats == 0) {
+                return;
+            }
+
+            ready.add(first.toBuilder()
+                    .id(null)
+                    .timestamp(last)
+                    .repeats(repeats)
+                    .deduplicated(true)
+                    .build());
+            repeats = 0;
+            last = 0;
+        }
+    }
+}
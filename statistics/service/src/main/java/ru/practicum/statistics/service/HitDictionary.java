@@ -0,0 +1,143 @@
+package ru.practicum.statistics.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.statistics.repository.DictionaryTable;
+import ru.practicum.statistics.repository.HitDictionaryRepository;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory cache of the app and uri dictionaries that hit rows reference by integer id.
+ * New entries are committed in their own transaction so a cached id never points to a rolled back row;
+ * ingestion resolves ids before opening its write transaction, so this does not hold a second connection.
+ * Database lookups run outside the cache maps' locks.
+ */
+@Component
+public class HitDictionary {
+    private final HitDictionaryRepository repository;
+    private final TransactionTemplate newTransaction;
+    private final Map<DictionaryTable, Map<String, Integer>> ids = new EnumMap<>(DictionaryTable.class);
+    private final Map<DictionaryTable, Map<Integer, String>> values = new EnumMap<>(DictionaryTable.class);
+
+    public HitDictionary(HitDictionaryRepository repository, PlatformTransactionManager transactionManager) {
+        this.repository = repository;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        for (DictionaryTable table : DictionaryTable.values()) {
+            ids.put(table, new ConcurrentHashMap<>());
+            values.put(table, new ConcurrentHashMap<>());
+        }
+    }
+
+    public int getOrCreateAppId(String app) {
+        return getOrCreate(DictionaryTable.APP, app);
+    }
+
+    public int getOrCreateUriId(String uri) {
+        return getOrCreate(DictionaryTable.URI, uri);
+    }
+
+    public int getOrCreateEntityTypeId(String entityType) {
+        return getOrCreate(DictionaryTable.ENTITY_TYPE, entityType);
+    }
+
+    public Optional<Integer> findEntityTypeId(String entityType) {
+        return Optional.ofNullable(find(DictionaryTable.ENTITY_TYPE, entityType));
+    }
+
+    public Optional<Integer> findUriId(String uri) {
+        return Optional.ofNullable(find(DictionaryTable.URI, uri));
+    }
+
+    /**
+     * Resolves uris and uri patterns to the ids of the known uris they match.
+     * Patterns are matched in the database, whose index serves the literal prefix before the first wildcard.
+     */
+    public List<Integer> findUriIds(Collection<String> uris) {
+        Set<Integer> uriIds = new LinkedHashSet<>();
+
+        for (String uri : uris) {
+            if (UriPattern.isPattern(uri)) {
+                repository.findByPattern(DictionaryTable.URI, UriPattern.toLikePattern(uri)).forEach((id, value) -> {
+                    cache(DictionaryTable.URI, value, id);
+                    uriIds.add(id);
+                });
+            } else {
+                findUriId(uri).ifPresent(uriIds::add);
+            }
+        }
+
+        return new ArrayList<>(uriIds);
+    }
+
+    public String getApp(int id) {
+        return getValue(DictionaryTable.APP, id);
+    }
+
+    public String getUri(int id) {
+        return getValue(DictionaryTable.URI, id);
+    }
+
+    public String getEntityType(int id) {
+        return getValue(DictionaryTable.ENTITY_TYPE, id);
+    }
+
+    private int getOrCreate(DictionaryTable table, String value) {
+        Integer id = find(table, value);
+
+        if (id != null) {
+            return id;
+        }
+
+        id = newTransaction.execute(status -> {
+            repository.insertIfAbsent(table, value);
+            return repository.findId(table, value);
+        });
+
+        cache(table, value, id);
+
+        return id;
+    }
+
+    private Integer find(DictionaryTable table, String value) {
+        Integer id = ids.get(table).get(value);
+
+        if (id == null) {
+            id = repository.findId(table, value);
+
+            if (id != null) {
+                cache(table, value, id);
+            }
+        }
+
+        return id;
+    }
+
+    private String getValue(DictionaryTable table, int id) {
+        String value = values.get(table).get(id);
+
+        if (value != null) {
+            return value;
+        }
+
+        value = repository.findValue(table, id);
+
+        if (value == null) {
+            throw new IllegalStateException("No " + table.getTable() + " with id " + id);
+        }
+
+        cache(table, value, id);
+
+        return value;
+    }
+
+    private void cache(DictionaryTable table, String value, int id) {
+        ids.get(table).put(value, id);
+        values.get(table).put(id, value);
+    }
+}
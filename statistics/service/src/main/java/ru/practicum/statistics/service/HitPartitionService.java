@@ -0,0 +1,127 @@
+package ru.practicum.statistics.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.statistics.config.HitPartitionProperties;
+import ru.practicum.statistics.repository.HitPartitionRepository;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static ru.practicum.statistics.mapper.HitCodec.toEpochMillis;
+
+/**
+ * Keeps day or month partitions of the hit table created ahead of time
+ * and removes whole partitions that fall out of the retention period,
+ * together with the rollups, sketches and visitors derived from them.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HitPartitionService {
+    private static final String PREFIX = "hit_p";
+    private static final DateTimeFormatter NAME_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final HitPartitionRepository partitionRepository;
+    private final HitPartitionProperties properties;
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${statistics.partition.check-interval:3600000}")
+    public void maintain() {
+        ChronoUnit interval = properties.getInterval();
+
+        if (interval != ChronoUnit.DAYS && interval != ChronoUnit.MONTHS) {
+            throw new IllegalStateException("Hit partitions can only be DAYS or MONTHS, got " + interval);
+        }
+
+        List<String> existing = partitionRepository.findPartitions();
+        LocalDate from = periodStart(LocalDate.now(), interval);
+
+        for (int i = 0; i <= properties.getAhead(); i++) {
+            LocalDate start = from.plus(i, interval);
+            String name = PREFIX + start.format(NAME_FORMATTER);
+
+            if (!existing.contains(name)) {
+                try {
+                    partitionRepository.create(name,
+                            toEpochMillis(start.atStartOfDay()),
+                            toEpochMillis(start.plus(1, interval).atStartOfDay()));
+                    log.info("Created hit partition {}", name);
+                } catch (DataAccessException e) {
+                    log.warn("Could not create hit partition {}: {}", name, e.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+
+        if (!properties.getRetention().isZero()) {
+            removeExpired(existing, interval, properties.getRetention());
+        }
+    }
+
+    /**
+     * Drops the partition holding exactly this day, if partitions are daily and it exists.
+     */
+    public boolean dropDay(LocalDate day) {
+        String name = PREFIX + day.format(NAME_FORMATTER);
+
+        if (properties.getInterval() != ChronoUnit.DAYS || !partitionRepository.findPartitions().contains(name)) {
+            return false;
+        }
+
+        partitionRepository.drop(name);
+        log.info("Dropped compacted hit partition {}", name);
+
+        return true;
+    }
+
+    private void removeExpired(List<String> partitions, ChronoUnit interval, Duration retention) {
+        LocalDateTime threshold = LocalDateTime.now().minus(retention);
+
+        for (String name : partitions) {
+            LocalDate start = parseStart(name);
+
+            if (start == null || start.plus(1, interval).atStartOfDay().isAfter(threshold)) {
+                continue;
+            }
+
+            if (properties.getRetentionAction() == HitPartitionProperties.RetentionAction.DETACH) {
+                partitionRepository.detach(name);
+                log.info("Detached hit partition {}", name);
+            } else {
+                partitionRepository.drop(name);
+                log.info("Dropped hit partition {}", name);
+            }
+        }
+
+        // Everything before the start of the period holding the threshold is out of retention.
+        LocalDateTime cutoff = periodStart(threshold.toLocalDate(), interval).atStartOfDay();
+        int pruned = partitionRepository.pruneBefore(cutoff);
+
+        if (pruned > 0) {
+            log.info("Pruned {} derived hit rows before {}", pruned, cutoff);
+        }
+    }
+
+    private static LocalDate periodStart(LocalDate date, ChronoUnit interval) {
+        return interval == ChronoUnit.MONTHS ? date.withDayOfMonth(1) : date;
+    }
+
+    private static LocalDate parseStart(String name) {
+        if (!name.startsWith(PREFIX)) {
+            return null;
+        }
+
+        try {
+            return LocalDate.parse(name.substring(PREFIX.length()), NAME_FORMATTER);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package ru.practicum.statistics.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.statistics.entity.Hit;
+import ru.practicum.statistics.repository.HitCount;
+import ru.practicum.statistics.repository.HitRollupRepository;
+import ru.practicum.statistics.repository.RollupGranularity;
+import ru.practicum.statistics.repository.RollupIncrement;
+import ru.practicum.statistics.repository.RollupQueryPart;
+import ru.practicum.statistics.repository.StatisticsRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+import static ru.practicum.statistics.mapper.HitCodec.toEpochMillis;
+import static ru.practicum.statistics.mapper.HitCodec.toLocalDateTime;
+
+/**
+ * Keeps per-minute and per-hour hit counts and answers total (non-unique) stats from them.
+ * Raw hits are only scanned for the partial minutes at both ends of the requested range.
+ * Committed hits are added to per-bucket deltas in memory, which are added to the rollup tables
+ * periodically in one transaction, so ingest never waits on a hot bucket row. Queries read the tables
+ * and the deltas under a lock the flush takes exclusively, so a delta is counted exactly once.
+ * Deltas lost with the process are recounted from the raw hits of the last rebuild window on startup.
+ */
+@Slf4j
+@Component
+public class HitRollupService {
+    private static final Comparator<RollupIncrement> INCREMENT_ORDER = Comparator
+            .comparingInt(RollupIncrement::getAppId)
+            .thenComparingInt(RollupIncrement::getUriId)
+            .thenComparing(RollupIncrement::getBucket);
+
+    private final HitRollupRepository rollupRepository;
+    private final StatisticsRepository statisticsRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<RollupGranularity, Map<RollupKey, Long>> pending = new EnumMap<>(RollupGranularity.class);
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+
+    @Value("${statistics.rollup.rebuild-window:1h}")
+    private Duration rebuildWindow;
+
+    public HitRollupService(HitRollupRepository rollupRepository,
+                            StatisticsRepository statisticsRepository,
+                            PlatformTransactionManager transactionManager) {
+        this.rollupRepository = rollupRepository;
+        this.statisticsRepository = statisticsRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            pending.put(granularity, new ConcurrentHashMap<>());
+        }
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        LocalDateTime from = LocalDateTime.now().minus(rebuildWindow).truncatedTo(ChronoUnit.HOURS);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                rollupRepository.recount(granularity, from);
+            }
+        });
+    }
+
+    /**
+     * Takes hits that have committed; hits of a rolled back write must not be passed in.
+     */
+    public void record(Collection<Hit> hits) {
+        pending.forEach((granularity, deltas) -> hits.forEach(hit -> deltas.merge(new RollupKey(hit.getAppId(),
+                        hit.getUriId(),
+                        toLocalDateTime(hit.getTimestamp()).truncatedTo(granularity.getUnit())),
+                1L,
+                Long::sum)));
+    }
+
+    /**
+     * Adds the pending deltas to the rollup tables; deltas of a failed flush are kept for the next one.
+     */
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${statistics.rollup.flush-interval:5000}")
+    public void flush() {
+        flushLock.writeLock().lock();
+
+        try {
+            Map<RollupGranularity, Map<RollupKey, Long>> drained = new EnumMap<>(RollupGranularity.class);
+
+            pending.forEach((granularity, deltas) -> {
+                Map<RollupKey, Long> taken = new HashMap<>();
+
+                deltas.keySet().forEach(key -> deltas.computeIfPresent(key, (k, hits) -> {
+                    taken.put(k, hits);
+                    return null;
+                }));
+
+                drained.put(granularity, taken);
+            });
+
+            if (drained.values().stream().allMatch(Map::isEmpty)) {
+                return;
+            }
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> drained.forEach((granularity, deltas) -> {
+                    if (!deltas.isEmpty()) {
+                        rollupRepository.increment(granularity, toIncrements(deltas));
+                    }
+                }));
+            } catch (RuntimeException e) {
+                log.warn("Failed to flush rollup deltas, retrying later: {}", e.getMessage());
+                drained.forEach((granularity, deltas) ->
+                        deltas.forEach((key, hits) -> pending.get(granularity).merge(key, hits, Long::sum)));
+            }
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    public List<HitCount> getStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+        Set<Integer> uriIdSet = uriIds == null ? null : Set.copyOf(uriIds);
+
+        flushLock.readLock().lock();
+
+        try {
+            return merge(plan(start, end).stream()
+                    .flatMap(part -> query(part, uriIds, uriIdSet).stream())
+                    .collect(Collectors.toList()));
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Splits a range into raw partial minutes at both ends, minute rollups up to the hour boundaries
+     * and hour rollups in between.
+     */
+    public List<RollupQueryPart> plan(LocalDateTime start, LocalDateTime end) {
+        LocalDateTime minuteFrom = ceil(start, ChronoUnit.MINUTES);
+        LocalDateTime minuteTo = end.truncatedTo(ChronoUnit.MINUTES);
+
+        if (!minuteFrom.isBefore(minuteTo)) {
+            return List.of(RollupQueryPart.raw(start, end, true));
+        }
+
+        List<RollupQueryPart> parts = new ArrayList<>();
+
+        if (start.isBefore(minuteFrom)) {
+            parts.add(RollupQueryPart.raw(start, minuteFrom, false));
+        }
+
+        LocalDateTime hourFrom = ceil(minuteFrom, ChronoUnit.HOURS);
+        LocalDateTime hourTo = minuteTo.truncatedTo(ChronoUnit.HOURS);
+
+        if (hourFrom.isBefore(hourTo)) {
+            addRollup(parts, RollupGranularity.MINUTE, minuteFrom, hourFrom);
+            addRollup(parts, RollupGranularity.HOUR, hourFrom, hourTo);
+            addRollup(parts, RollupGranularity.MINUTE, hourTo, minuteTo);
+        } else {
+            addRollup(parts, RollupGranularity.MINUTE, minuteFrom, minuteTo);
+        }
+
+        parts.add(RollupQueryPart.raw(minuteTo, end, true));
+
+        return parts;
+    }
+
+    /**
+     * Sums counts of the same (app, uri) coming from different parts of a plan.
+     */
+    public List<HitCount> merge(Collection<HitCount> counts) {
+        Map<RollupKey, Long> hits = new HashMap<>();
+
+        counts.forEach(count -> hits.merge(new RollupKey(count.getAppId(), count.getUriId(), null),
+                count.getHits(),
+                Long::sum));
+
+        return hits.entrySet().stream()
+                .map(e -> new HitCount(e.getKey().getAppId(), e.getKey().getUriId(), e.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    private List<HitCount> query(RollupQueryPart part, List<Integer> uriIds, Set<Integer> uriIdSet) {
+        if (part.getGranularity() != null) {
+            List<HitCount> counts = new ArrayList<>(rollupRepository.getHits(part.getGranularity(),
+                    part.getFrom(),
+                    part.getTo(),
+                    uriIds));
+
+            pending.get(part.getGranularity()).forEach((key, hits) -> {
+                if (!key.getBucket().isBefore(part.getFrom()) && key.getBucket().isBefore(part.getTo())
+                        && (uriIdSet == null || uriIdSet.contains(key.getUriId()))) {
+                    counts.add(new HitCount(key.getAppId(), key.getUriId(), hits));
+                }
+            });
+
+            return counts;
+        }
+
+        long from = toEpochMillis(part.getFrom());
+        long to = toEpochMillis(part.getTo());
+
+        return part.isInclusiveTo()
+                ? statisticsRepository.getStats(from, to, uriIds, false)
+                : statisticsRepository.getHitCounts(from, to, uriIds);
+    }
+
+    /**
+     * Lists deltas in a stable order, so that the upserts never deadlock with another writer of the same rows.
+     */
+    private static List<RollupIncrement> toIncrements(Map<RollupKey, Long> deltas) {
+        return deltas.entrySet().stream()
+                .map(e -> new RollupIncrement(e.getKey().getAppId(),
+                        e.getKey().getUriId(),
+                        e.getKey().getBucket(),
+                        e.getValue()))
+                .sorted(INCREMENT_ORDER)
+                .collect(Collectors.toList());
+    }
+
+    private void addRollup(List<RollupQueryPart> parts,
+                           RollupGranularity granularity,
+                           LocalDateTime from,
+                           LocalDateTime to) {
+        if (from.isBefore(to)) {
+            parts.add(RollupQueryPart.rollup(granularity, from, to));
+        }
+    }
+
+    private static LocalDateTime ceil(LocalDateTime time, ChronoUnit unit) {
+        LocalDateTime truncated = time.truncatedTo(unit);
+
+        return truncated.equals(time) ? time : truncated.plus(1, unit);
+    }
+
+    @lombok.Value
+    private static class RollupKey {
+        int appId;
+        int uriId;
+        LocalDateTime bucket;
+    }
+}
@@ -0,0 +1,202 @@
+package ru.practicum.statistics.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.statistics.entity.Hit;
+import ru.practicum.statistics.repository.HitCount;
+import ru.practicum.statistics.repository.HitSketchRepository;
+import ru.practicum.statistics.repository.StatisticsRepository;
+import ru.practicum.statistics.sketch.HyperLogLog;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static ru.practicum.statistics.mapper.HitCodec.toEpochMillis;
+import static ru.practicum.statistics.mapper.HitCodec.toLocalDateTime;
+
+/**
+ * Keeps a HyperLogLog sketch of visitor IPs per (app, uri, hour) and answers approximate unique stats
+ * by merging them. New hits are collected in memory and merged into hit_sketch periodically.
+ * A flushed sketch stays readable in memory until its merge has committed, and sketches lost with the
+ * process are rebuilt from the raw hits of the last rebuild window on startup. Merging a sketch twice
+ * does not change it, so overlaps between memory, the rebuild and the table are harmless.
+ */
+@Slf4j
+@Component
+public class HitSketchService {
+    private static final long HOUR_MILLIS = Duration.ofHours(1).toMillis();
+
+    private final HitSketchRepository sketchRepository;
+    private final StatisticsRepository statisticsRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<SketchKey, HyperLogLog> pending = new ConcurrentHashMap<>();
+    private final Map<SketchKey, HyperLogLog> flushing = new ConcurrentHashMap<>();
+    private final Object flushMonitor = new Object();
+
+    @Value("${statistics.sketch.precision:12}")
+    private int precision;
+
+    @Value("${statistics.sketch.rebuild-window:1h}")
+    private Duration rebuildWindow;
+
+    public HitSketchService(HitSketchRepository sketchRepository,
+                            StatisticsRepository statisticsRepository,
+                            PlatformTransactionManager transactionManager) {
+        this.sketchRepository = sketchRepository;
+        this.statisticsRepository = statisticsRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Also sketches hits copied in by a schema migration, once: the marker is removed after their sketches
+     * have been merged, and a failed merge leaves it for the next startup.
+     */
+    @PostConstruct
+    public void rebuild() {
+        long from = toEpochMillis(LocalDateTime.now().minus(rebuildWindow).truncatedTo(ChronoUnit.HOURS));
+        Optional<Long> backfillFrom = sketchRepository.findBackfillFrom();
+
+        if (backfillFrom.isPresent()) {
+            from = Math.min(from, backfillFrom.get() - backfillFrom.get() % HOUR_MILLIS);
+        }
+
+        sketchRepository.forEachHourlyVisitor(from, (appId, uriId, hour, ip) ->
+                add(new SketchKey(appId, uriId, toLocalDateTime(hour)), ip));
+
+        if (backfillFrom.isPresent()) {
+            flush();
+
+            if (flushing.isEmpty()) {
+                sketchRepository.deleteBackfill();
+                log.info("Sketched migrated hits from {}", toLocalDateTime(backfillFrom.get()));
+            }
+        }
+    }
+
+    public void record(Collection<Hit> hits) {
+        hits.forEach(hit -> add(new SketchKey(hit.getAppId(),
+                        hit.getUriId(),
+                        toLocalDateTime(hit.getTimestamp()).truncatedTo(ChronoUnit.HOURS)),
+                hit.getIp()));
+    }
+
+    /**
+     * Moves pending sketches aside, merges copies of them into hit_sketch and forgets them only once
+     * the merge has committed; a failed merge is retried with the next flush.
+     */
+    @Scheduled(fixedDelayString = "${statistics.sketch.flush-interval:5000}")
+    public void flush() {
+        synchronized (flushMonitor) {
+            pending.keySet().forEach(key -> pending.computeIfPresent(key, (k, sketch) -> {
+                flushing.merge(k, sketch, HitSketchService::union);
+                return null;
+            }));
+
+            Map<SketchKey, HyperLogLog> copies = new LinkedHashMap<>();
+
+            flushing.keySet().stream()
+                    .sorted(Comparator.comparingInt(SketchKey::getAppId)
+                            .thenComparingInt(SketchKey::getUriId)
+                            .thenComparing(SketchKey::getBucket))
+                    .forEach(key -> flushing.computeIfPresent(key, (k, sketch) -> {
+                        copies.put(k, HyperLogLog.fromBytes(sketch.toBytes()));
+                        return sketch;
+                    }));
+
+            if (copies.isEmpty()) {
+                return;
+            }
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> copies.forEach((key, sketch) ->
+                        sketchRepository.merge(key.getAppId(), key.getUriId(), key.getBucket(), sketch)));
+            } catch (RuntimeException e) {
+                log.warn("Failed to merge {} sketches, retrying later: {}", copies.size(), e.getMessage());
+                return;
+            }
+
+            copies.keySet().forEach(flushing::remove);
+        }
+    }
+
+    public List<HitCount> getStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+        LocalDateTime hourFrom = start.truncatedTo(ChronoUnit.HOURS).equals(start)
+                ? start
+                : start.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+        LocalDateTime hourTo = end.truncatedTo(ChronoUnit.HOURS);
+
+        if (!hourFrom.isBefore(hourTo)) {
+            return statisticsRepository.getStats(toEpochMillis(start), toEpochMillis(end), uriIds, true);
+        }
+
+        Map<SketchKey, HyperLogLog> sketches = new HashMap<>();
+
+        // Memory is read before the table: a sketch that leaves flushing has committed before it is looked for there.
+        Set<Integer> uriIdSet = uriIds == null ? null : Set.copyOf(uriIds);
+
+        mergeInMemory(pending, sketches, hourFrom, hourTo, uriIdSet);
+        mergeInMemory(flushing, sketches, hourFrom, hourTo, uriIdSet);
+
+        sketchRepository.forEachSketch(hourFrom, hourTo, uriIds, (appId, uriId, sketch) ->
+                sketchFor(sketches, appId, uriId).merge(sketch));
+
+        sketchRepository.forEachVisitor(toEpochMillis(start), toEpochMillis(hourFrom), false, uriIds,
+                (appId, uriId, ip) -> sketchFor(sketches, appId, uriId).add(ip));
+        sketchRepository.forEachVisitor(toEpochMillis(hourTo), toEpochMillis(end), true, uriIds,
+                (appId, uriId, ip) -> sketchFor(sketches, appId, uriId).add(ip));
+
+        return sketches.entrySet().stream()
+                .map(e -> new HitCount(e.getKey().getAppId(),
+                        e.getKey().getUriId(),
+                        e.getValue().estimate(),
+                        e.getValue().relativeError()))
+                .collect(Collectors.toList());
+    }
+
+    private void mergeInMemory(Map<SketchKey, HyperLogLog> source,
+                               Map<SketchKey, HyperLogLog> sketches,
+                               LocalDateTime hourFrom,
+                               LocalDateTime hourTo,
+                               Set<Integer> uriIds) {
+        source.keySet().stream()
+                .filter(key -> !key.getBucket().isBefore(hourFrom) && key.getBucket().isBefore(hourTo))
+                .filter(key -> uriIds == null || uriIds.contains(key.getUriId()))
+                .forEach(key -> source.computeIfPresent(key, (k, sketch) -> {
+                    sketchFor(sketches, k.getAppId(), k.getUriId()).merge(sketch);
+                    return sketch;
+                }));
+    }
+
+    private void add(SketchKey key, byte[] ip) {
+        pending.compute(key, (k, sketch) -> {
+            HyperLogLog result = sketch == null ? new HyperLogLog(precision) : sketch;
+            result.add(ip);
+            return result;
+        });
+    }
+
+    private static HyperLogLog union(HyperLogLog a, HyperLogLog b) {
+        a.merge(b);
+        return a;
+    }
+
+    private HyperLogLog sketchFor(Map<SketchKey, HyperLogLog> sketches, int appId, int uriId) {
+        return sketches.computeIfAbsent(new SketchKey(appId, uriId, null), key -> new HyperLogLog(precision));
+    }
+
+    @lombok.Value
+    private static class SketchKey {
+        int appId;
+        int uriId;
+        LocalDateTime bucket;
+    }
+}
@@ -0,0 +1,68 @@
+package ru.practicum.statistics.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.statistics.entity.Hit;
+import ru.practicum.statistics.repository.HitVisitor;
+import ru.practicum.statistics.repository.HitVisitorRepository;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static ru.practicum.statistics.mapper.HitCodec.toLocalDateTime;
+
+/**
+ * Maintains hit_visitor, the first hit of every (app, uri, ip) per day, which answers exact
+ * unique counts for whole days without scanning raw hits.
+ */
+@Component
+@RequiredArgsConstructor
+public class HitVisitorService {
+    private static final Comparator<HitVisitor> VISITOR_ORDER = Comparator
+            .comparingInt(HitVisitor::getUriId)
+            .thenComparing(HitVisitor::getDay)
+            .thenComparingInt(HitVisitor::getAppId)
+            .thenComparing(HitVisitor::getIp, Arrays::compare);
+
+    private final HitVisitorRepository visitorRepository;
+
+    public void record(Collection<Hit> hits) {
+        List<HitVisitor> visitors = toVisitors(hits);
+
+        if (!visitors.isEmpty()) {
+            visitorRepository.insert(visitors);
+        }
+    }
+
+    /**
+     * Collapses hits to one visitor per key, in a stable order so that concurrent upserts do not deadlock.
+     */
+    public List<HitVisitor> toVisitors(Collection<Hit> hits) {
+        Map<VisitorKey, Long> firstSeen = hits.stream()
+                .collect(Collectors.toMap(hit -> new VisitorKey(hit.getAppId(),
+                                hit.getUriId(),
+                                toLocalDateTime(hit.getTimestamp()).toLocalDate(),
+                                hit.getIp()),
+                        Hit::getTimestamp,
+                        Math::min));
+
+        return firstSeen.entrySet().stream()
+                .map(e -> new HitVisitor(e.getKey().getAppId(),
+                        e.getKey().getUriId(),
+                        e.getKey().getDay(),
+                        e.getKey().getIp(),
+                        e.getValue()))
+                .sorted(VISITOR_ORDER)
+                .collect(Collectors.toList());
+    }
+
+    @Value
+    private static class VisitorKey {
+        int appId;
+        int uriId;
+        LocalDate day;
+        byte[] ip;
+    }
+}
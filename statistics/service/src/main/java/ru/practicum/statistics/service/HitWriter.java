@@ -0,0 +1,59 @@
+package ru.practicum.statistics.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.statistics.entity.Hit;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+/**
+ * Inserts hit rows in JDBC batches together with the first-seen visitors derived from them.
+ * Rollups, sketches and the in-memory counters only take the hits once they have committed.
+ * Repeats held back by {@link HitDeduplicator} still count towards rollups and the in-memory counters.
+ */
+@Component
+@RequiredArgsConstructor
+public class HitWriter {
+    private final HitRollupService rollupService;
+    private final HitSketchService sketchService;
+    private final RecentHitCounter recentHitCounter;
+    private final TopHitTracker topHitTracker;
+    private final HitDeduplicator deduplicator;
+    private final HitVisitorService visitorService;
+    private final EntityManager entityManager;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size}")
+    private int batchSize;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void write(List<Hit> hits) {
+        List<Hit> rows = deduplicator.filter(hits);
+
+        for (int i = 0; i < rows.size(); i++) {
+            entityManager.persist(rows.get(i));
+
+            if ((i + 1) % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+
+        visitorService.record(rows);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                rollupService.record(hits);
+                sketchService.record(rows);
+                recentHitCounter.record(hits);
+                topHitTracker.record(hits);
+            }
+        });
+    }
+}
@@ -0,0 +1,187 @@
+package ru.practicum.statistics.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.statistics.entity.Hit;
+import ru.practicum.statistics.repository.HitCount;
+import ru.practicum.statistics.repository.HitRollupRepository;
+import ru.practicum.statistics.repository.RollupGranularity;
+import ru.practicum.statistics.repository.StatisticsRepository;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static ru.practicum.statistics.mapper.HitCodec.toEpochMillis;
+
+/**
+ * Per-minute hit counts of the recent window kept in memory, one ring buffer per (app, uri), indexed by uri
+ * so that a query only reads the rings of the uris it asks for.
+ * Each ring slot packs its minute and its count into one long so increments are a single CAS.
+ */
+@Component
+@DependsOn("hitRollupService")
+@RequiredArgsConstructor
+public class RecentHitCounter {
+    private static final long MINUTE_MILLIS = Duration.ofMinutes(1).toMillis();
+    private static final long COUNT_MASK = 0xFFFF_FFFFL;
+
+    private final HitRollupRepository rollupRepository;
+    private final StatisticsRepository statisticsRepository;
+    private final Map<Integer, Map<Integer, AtomicLongArray>> rings = new ConcurrentHashMap<>();
+
+    @Value("${statistics.recent.enabled:true}")
+    private boolean enabled;
+
+    @Value("${statistics.recent.window:24h}")
+    private Duration window;
+
+    private int slots;
+
+    @PostConstruct
+    public void rebuild() {
+        slots = (int) window.toMinutes();
+
+        if (!enabled) {
+            return;
+        }
+
+        LocalDateTime to = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        LocalDateTime from = to.minusMinutes(slots);
+
+        rollupRepository.forEachBucket(RollupGranularity.MINUTE, from, to, (appId, uriId, bucket, hits) ->
+                add(appId, uriId, toEpochMillis(bucket) / MINUTE_MILLIS, hits));
+    }
+
+    public void record(Collection<Hit> hits) {
+        if (!enabled) {
+            return;
+        }
+
+        hits.forEach(hit -> add(hit.getAppId(), hit.getUriId(), hit.getTimestamp() / MINUTE_MILLIS, 1));
+    }
+
+    /**
+     * Answers total hit counts from memory when the range starts inside the window.
+     * Partial minutes at either end that memory cannot split are read from raw hits; the current minute
+     * is only taken from memory whole when the range ends after it.
+     */
+    public Optional<List<HitCount>> getStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+        long nowMinute = toEpochMillis(LocalDateTime.now()) / MINUTE_MILLIS;
+        long startMillis = toEpochMillis(start);
+        long endMillis = toEpochMillis(end);
+        long fromMinute = Math.floorDiv(startMillis + MINUTE_MILLIS - 1, MINUTE_MILLIS);
+        long lastMinute = Math.floorDiv(endMillis, MINUTE_MILLIS);
+        boolean endIsLive = lastMinute > nowMinute;
+
+        if (!enabled || fromMinute <= nowMinute - slots || fromMinute > lastMinute) {
+            return Optional.empty();
+        }
+
+        long toMinute = endIsLive ? nowMinute + 1 : lastMinute;
+        Map<CounterKey, Long> counts = new HashMap<>();
+
+        Collection<Integer> keys = uriIds == null ? rings.keySet() : Set.copyOf(uriIds);
+
+        for (Integer uriId : keys) {
+            rings.getOrDefault(uriId, Map.of()).forEach((appId, ring) -> {
+                long sum = sum(ring, fromMinute, toMinute);
+
+                if (sum > 0) {
+                    counts.merge(new CounterKey(appId, uriId), sum, Long::sum);
+                }
+            });
+        }
+
+        if (startMillis < fromMinute * MINUTE_MILLIS) {
+            statisticsRepository.getHitCounts(startMillis, fromMinute * MINUTE_MILLIS, uriIds)
+                    .forEach(count -> counts.merge(new CounterKey(count.getAppId(), count.getUriId()),
+                            count.getHits(),
+                            Long::sum));
+        }
+
+        if (!endIsLive) {
+            statisticsRepository.getStats(lastMinute * MINUTE_MILLIS, endMillis, uriIds, false)
+                    .forEach(count -> counts.merge(new CounterKey(count.getAppId(), count.getUriId()),
+                            count.getHits(),
+                            Long::sum));
+        }
+
+        List<HitCount> result = new ArrayList<>(counts.size());
+        counts.forEach((key, hits) -> result.add(new HitCount(key.getAppId(), key.getUriId(), hits)));
+
+        return Optional.of(result);
+    }
+
+    @Scheduled(fixedDelayString = "${statistics.recent.sweep-interval:600000}")
+    public void sweep() {
+        long oldestMinute = toEpochMillis(LocalDateTime.now()) / MINUTE_MILLIS - slots;
+
+        rings.keySet().forEach(uriId -> rings.computeIfPresent(uriId, (k, apps) -> {
+            apps.values().removeIf(ring -> newestMinute(ring) <= oldestMinute);
+            return apps.isEmpty() ? null : apps;
+        }));
+    }
+
+    private void add(int appId, int uriId, long minute, long hits) {
+        AtomicLongArray ring = rings.computeIfAbsent(uriId, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(appId, k -> new AtomicLongArray(slots));
+        int index = (int) Math.floorMod(minute, (long) slots);
+
+        while (true) {
+            long slot = ring.get(index);
+            long slotMinute = slot >>> 32;
+            long updated;
+
+            if (slotMinute == minute) {
+                updated = slot + hits;
+            } else if (slotMinute < minute) {
+                updated = (minute << 32) | hits;
+            } else {
+                return;
+            }
+
+            if (ring.compareAndSet(index, slot, updated)) {
+                return;
+            }
+        }
+    }
+
+    private long sum(AtomicLongArray ring, long fromMinute, long toMinute) {
+        long sum = 0;
+
+        for (int i = 0; i < ring.length(); i++) {
+            long slot = ring.get(i);
+            long slotMinute = slot >>> 32;
+
+            if (slotMinute >= fromMinute && slotMinute < toMinute) {
+                sum += slot & COUNT_MASK;
+            }
+        }
+
+        return sum;
+    }
+
+    private long newestMinute(AtomicLongArray ring) {
+        long newest = 0;
+
+        for (int i = 0; i < ring.length(); i++) {
+            newest = Math.max(newest, ring.get(i) >>> 32);
+        }
+
+        return newest;
+    }
+
+    @lombok.Value
+    private static class CounterKey {
+        int appId;
+        int uriId;
+    }
+}
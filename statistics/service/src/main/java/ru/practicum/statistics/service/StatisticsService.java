@@ -2,13 +2,38 @@ package ru.practicum.statistics.service;
 
 import ru.practicum.statistics.dto.RequestHitDto;
 import ru.practicum.statistics.dto.ResponseHitDto;
+import ru.practicum.statistics.dto.StatsPrecision;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 public interface StatisticsService {
 
     RequestHitDto createHit(RequestHitDto hitDto);
 
-    List<ResponseHitDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique);
+    void createHits(List<RequestHitDto> hitDtos);
+
+    List<ResponseHitDto> getStats(LocalDateTime start,
+                                  LocalDateTime end,
+                                  List<String> uris,
+                                  boolean unique,
+                                  StatsPrecision precision);
+
+    /**
+     * Hits of one uri, or of distinct ips if unique, in the range.
+     */
+    long getCount(LocalDateTime start, LocalDateTime end, String uri, boolean unique);
+
+    List<ResponseHitDto> getTop(LocalDateTime start,
+                                LocalDateTime end,
+                                int n,
+                                String prefix,
+                                StatsPrecision precision);
+
+    Map<Long, Long> getViews(String entityType,
+                             List<Long> entityIds,
+                             LocalDateTime start,
+                             LocalDateTime end,
+                             boolean unique);
 }
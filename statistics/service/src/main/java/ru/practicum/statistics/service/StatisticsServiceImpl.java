@@ -3,34 +3,222 @@ package ru.practicum.statistics.service;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 import ru.practicum.statistics.dto.RequestHitDto;
 import ru.practicum.statistics.dto.ResponseHitDto;
+import ru.practicum.statistics.dto.StatsPrecision;
+import ru.practicum.statistics.entity.Hit;
+import ru.practicum.statistics.journal.HitJournal;
 import ru.practicum.statistics.mapper.HitMapper;
+import ru.practicum.statistics.repository.HitCount;
 import ru.practicum.statistics.repository.StatisticsRepository;
 
 import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static ru.practicum.statistics.mapper.HitCodec.toEpochMillis;
 
 @Service
 @RequiredArgsConstructor
 @Transactional(readOnly = true)
 public class StatisticsServiceImpl implements StatisticsService {
     private final StatisticsRepository repository;
+    private final HitRollupService rollupService;
+    private final HitSketchService sketchService;
+    private final RecentHitCounter recentHitCounter;
+    private final HitWriter hitWriter;
+    private final HitJournal journal;
+    private final StatsResultCache resultCache;
+    private final TopHitTracker topHitTracker;
+    private final HitDictionary dictionary;
+    private final HitMapper hitMapper;
+    private final TransactionTemplate transactionTemplate;
 
+    /**
+     * Dictionary ids are resolved before the write transaction starts, so that a new app or uri is
+     * committed on the same pooled connection instead of a second one opened next to the write.
+     */
     @Override
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public RequestHitDto createHit(RequestHitDto hitDto) {
-        return  HitMapper.toRequestHitDto(repository.save(HitMapper.toHitEntityFromRequestHitDto(hitDto)));
+        Hit hit = hitMapper.toHitEntityFromRequestHitDto(hitDto);
+
+        write(List.of(hit));
+
+        return hitMapper.toRequestHitDto(hit);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void createHits(List<RequestHitDto> hitDtos) {
+        write(hitDtos.stream()
+                .map(hitMapper::toHitEntityFromRequestHitDto)
+                .collect(Collectors.toList()));
     }
 
     @Override
-    public List<ResponseHitDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+    public List<ResponseHitDto> getStats(LocalDateTime start,
+                                         LocalDateTime end,
+                                         List<String> uris,
+                                         boolean unique,
+                                         StatsPrecision precision) {
         if (start.isAfter(end)) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "End cannot be early then start");
         }
 
-        return repository.getStats(start, end, uris, unique);
+        return resultCache.get(start, end, uris, unique, precision, () -> query(start, end, uris, unique, precision));
+    }
+
+    @Override
+    public long getCount(LocalDateTime start, LocalDateTime end, String uri, boolean unique) {
+        if (UriPattern.isPattern(uri)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Count is only available for a single uri");
+        }
+
+        return getStats(start, end, List.of(uri), unique, StatsPrecision.EXACT).stream()
+                .mapToLong(ResponseHitDto::getHits)
+                .sum();
+    }
+
+    @Override
+    public List<ResponseHitDto> getTop(LocalDateTime start,
+                                       LocalDateTime end,
+                                       int n,
+                                       String prefix,
+                                       StatsPrecision precision) {
+        if (start.isAfter(end)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "End cannot be early then start");
+        }
+
+        if (precision == StatsPrecision.APPROX) {
+            Optional<List<HitCount>> top = topHitTracker.getTop(start, end, n,
+                    uriId -> prefix == null || dictionary.getUri(uriId).startsWith(prefix));
+
+            if (top.isPresent()) {
+                return top.get().stream()
+                        .map(hitMapper::toResponseHitDto)
+                        .collect(Collectors.toList());
+            }
+        }
+
+        return query(start, end, null, false, StatsPrecision.EXACT).stream()
+                .filter(hit -> prefix == null || hit.getUri().startsWith(prefix))
+                .limit(n)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Map<Long, Long> getViews(String entityType,
+                                    List<Long> entityIds,
+                                    LocalDateTime start,
+                                    LocalDateTime end,
+                                    boolean unique) {
+        if (start != null && end != null && start.isAfter(end)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "End cannot be early then start");
+        }
+
+        Optional<Integer> entityTypeId = dictionary.findEntityTypeId(entityType);
+
+        if (entityTypeId.isEmpty() || entityIds.isEmpty()) {
+            return Map.of();
+        }
+
+        long from = start == null ? Long.MIN_VALUE : toEpochMillis(start);
+        long to = end == null ? Long.MAX_VALUE : toEpochMillis(end);
+
+        if (!journal.isEnabled() || unique) {
+            return repository.getViews(entityTypeId.get(), entityIds, from, to, unique);
+        }
+
+        return journal.read(() -> {
+            Map<Long, Long> views = new HashMap<>(repository.getViews(entityTypeId.get(), entityIds, from, to, false));
+
+            journal.getPendingViews(entityTypeId.get(), entityIds, from, to)
+                    .forEach((entityId, hits) -> views.merge(entityId, hits, Long::sum));
+
+            return views;
+        });
+    }
+
+    private List<ResponseHitDto> query(LocalDateTime start,
+                                       LocalDateTime end,
+                                       List<String> uris,
+                                       boolean unique,
+                                       StatsPrecision precision) {
+        List<Integer> uriIds = uris == null || uris.isEmpty() ? null : dictionary.findUriIds(uris);
+
+        if (uriIds != null && uriIds.isEmpty()) {
+            return List.of();
+        }
+
+        // Distinct visitors cannot be added up, so unique counts leave out hits the journal has not loaded yet.
+        if (!journal.isEnabled() || unique) {
+            return toResponse(countHits(start, end, uriIds, unique, precision));
+        }
+
+        return toResponse(journal.read(() -> addPending(countHits(start, end, uriIds, false, precision),
+                journal.getPendingCounts(toEpochMillis(start), toEpochMillis(end), uriIds))));
+    }
+
+    private void write(List<Hit> hits) {
+        if (journal.isEnabled()) {
+            journal.append(hits);
+            resultCache.recordWrites(hits);
+        } else {
+            transactionTemplate.executeWithoutResult(status -> hitWriter.write(hits));
+            resultCache.recordWrites(hits);
+        }
+    }
+
+    private List<ResponseHitDto> toResponse(List<HitCount> counts) {
+        return counts.stream()
+                .sorted(Comparator.comparing(HitCount::getHits).reversed())
+                .map(hitMapper::toResponseHitDto)
+                .collect(Collectors.toList());
+    }
+
+    private List<HitCount> countHits(LocalDateTime start,
+                                     LocalDateTime end,
+                                     List<Integer> uriIds,
+                                     boolean unique,
+                                     StatsPrecision precision) {
+        if (unique && precision == StatsPrecision.APPROX) {
+            return sketchService.getStats(start, end, uriIds);
+        }
+
+        if (unique) {
+            return repository.getStats(toEpochMillis(start), toEpochMillis(end), uriIds, true);
+        }
+
+        return recentHitCounter.getStats(start, end, uriIds)
+                .orElseGet(() -> rollupService.getStats(start, end, uriIds));
+    }
+
+    private List<HitCount> addPending(List<HitCount> counts, List<HitCount> pending) {
+        if (pending.isEmpty()) {
+            return counts;
+        }
+
+        Map<List<Integer>, Long> merged = new HashMap<>();
+
+        for (HitCount count : counts) {
+            merged.merge(List.of(count.getAppId(), count.getUriId()), count.getHits(), Long::sum);
+        }
+
+        for (HitCount count : pending) {
+            merged.merge(List.of(count.getAppId(), count.getUriId()), count.getHits(), Long::sum);
+        }
+
+        return merged.entrySet().stream()
+                .map(e -> new HitCount(e.getKey().get(0), e.getKey().get(1), e.getValue()))
+                .collect(Collectors.toList());
     }
 }
@@ -0,0 +1,194 @@
+package ru.practicum.statistics.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.statistics.config.StatsCacheProperties;
+import ru.practicum.statistics.dto.ResponseHitDto;
+import ru.practicum.statistics.dto.StatsPrecision;
+import ru.practicum.statistics.entity.Hit;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static ru.practicum.statistics.mapper.HitCodec.toEpochMillis;
+
+/**
+ * Results of /stats queries keyed on normalized parameters.
+ * Every write bumps a version for the uris it touches; an entry computed before a newer version of one of
+ * its uris is dirty and is recomputed once it is older than the configured staleness.
+ */
+@Component
+public class StatsResultCache {
+    private final StatsCacheProperties properties;
+    private final HitDictionary dictionary;
+    private final Cache<StatsKey, CachedStats> cache;
+    private final AtomicLong version = new AtomicLong();
+    private final Map<Integer, Long> uriVersions = new ConcurrentHashMap<>();
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter staleCounter;
+    private final Counter evictionCounter;
+
+    public StatsResultCache(StatsCacheProperties properties, HitDictionary dictionary, MeterRegistry registry) {
+        this.properties = properties;
+        this.dictionary = dictionary;
+        this.hitCounter = requests(registry, "hit");
+        this.missCounter = requests(registry, "miss");
+        this.staleCounter = requests(registry, "stale");
+        this.evictionCounter = Counter.builder("statistics.cache.evictions").register(registry);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTtl())
+                .<StatsKey, CachedStats>removalListener((key, value, cause) -> {
+                    if (cause.wasEvicted()) {
+                        evictionCounter.increment();
+                    }
+                })
+                .build();
+
+        Gauge.builder("statistics.cache.size", cache, Cache::estimatedSize).register(registry);
+    }
+
+    public List<ResponseHitDto> get(LocalDateTime start,
+                                    LocalDateTime end,
+                                    List<String> uris,
+                                    boolean unique,
+                                    StatsPrecision precision,
+                                    Supplier<List<ResponseHitDto>> query) {
+        Lookup lookup = lookup(start, end, uris, unique, precision);
+
+        return lookup.getCached().orElseGet(() -> lookup.store(query.get()));
+    }
+
+    /**
+     * Looks the query up without running it, for callers that compute the result asynchronously.
+     * On a miss the returned lookup stores the result computed afterwards.
+     */
+    public Lookup lookup(LocalDateTime start,
+                         LocalDateTime end,
+                         List<String> uris,
+                         boolean unique,
+                         StatsPrecision precision) {
+        if (!properties.isEnabled()) {
+            return new Lookup(null, null);
+        }
+
+        StatsKey key = new StatsKey(toEpochMillis(start), toEndBucket(end), normalize(uris), unique, precision);
+        CachedStats cached = cache.getIfPresent(key);
+
+        if (cached != null && isUsable(key, cached)) {
+            hitCounter.increment();
+            return new Lookup(key, cached.getResult());
+        }
+
+        (cached == null ? missCounter : staleCounter).increment();
+
+        return new Lookup(key, null);
+    }
+
+    /**
+     * Marks entries depending on the uris of these hits as dirty. Must be called once the hits are visible to queries.
+     */
+    public void recordWrites(Collection<Hit> hits) {
+        long current = version.incrementAndGet();
+
+        hits.stream()
+                .map(Hit::getUriId)
+                .distinct()
+                .forEach(uriId -> uriVersions.merge(uriId, current, Math::max));
+    }
+
+    private boolean isUsable(StatsKey key, CachedStats cached) {
+        return System.nanoTime() - cached.getComputedAt() <= properties.getMaxStaleness().toNanos()
+                || !isDirty(key, cached);
+    }
+
+    private boolean isDirty(StatsKey key, CachedStats cached) {
+        // A pattern may match uris created after the entry, so it depends on every write.
+        if (key.getUris() == null || key.getUris().stream().anyMatch(UriPattern::isPattern)) {
+            return version.get() > cached.getVersion();
+        }
+
+        return key.getUris().stream()
+                .map(dictionary::findUriId)
+                .flatMap(Optional::stream)
+                .anyMatch(uriId -> uriVersions.getOrDefault(uriId, 0L) > cached.getVersion());
+    }
+
+    private long toEndBucket(LocalDateTime end) {
+        long endMillis = toEpochMillis(end);
+        long bucket = properties.getEndBucket().toMillis();
+
+        return bucket > 0 ? Math.floorDiv(endMillis, bucket) * bucket : endMillis;
+    }
+
+    private static List<String> normalize(List<String> uris) {
+        return uris == null || uris.isEmpty() ? null : uris.stream()
+                .distinct()
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private static Counter requests(MeterRegistry registry, String result) {
+        return Counter.builder("statistics.cache.requests")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    public class Lookup {
+        private final StatsKey key;
+        private final List<ResponseHitDto> cached;
+        private final long computedVersion = version.get();
+        private final long computedAt = System.nanoTime();
+
+        private Lookup(StatsKey key, List<ResponseHitDto> cached) {
+            this.key = key;
+            this.cached = cached;
+        }
+
+        public Optional<List<ResponseHitDto>> getCached() {
+            return Optional.ofNullable(cached);
+        }
+
+        /**
+         * Caches a result computed after the lookup, against the write version seen before it was computed.
+         */
+        public List<ResponseHitDto> store(List<ResponseHitDto> result) {
+            List<ResponseHitDto> copy = List.copyOf(result);
+
+            if (key != null) {
+                cache.put(key, new CachedStats(copy, computedVersion, computedAt));
+            }
+
+            return copy;
+        }
+    }
+
+    @Value
+    private static class StatsKey {
+        long start;
+        long endBucket;
+        List<String> uris;
+        boolean unique;
+        StatsPrecision precision;
+    }
+
+    @Value
+    private static class CachedStats {
+        List<ResponseHitDto> result;
+        long version;
+        long computedAt;
+    }
+}
@@ -0,0 +1,161 @@
+package ru.practicum.statistics.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.statistics.entity.Hit;
+import ru.practicum.statistics.repository.HitCount;
+import ru.practicum.statistics.repository.HitRollupRepository;
+import ru.practicum.statistics.repository.RollupGranularity;
+import ru.practicum.statistics.sketch.SpaceSaving;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+
+import static ru.practicum.statistics.mapper.HitCodec.toEpochMillis;
+import static ru.practicum.statistics.mapper.HitCodec.toLocalDateTime;
+
+/**
+ * Space-Saving summary of the most hit (app, uri) pairs per hour of the recent window.
+ * Summaries of the full hours in a range are merged; the partial hours at both ends are counted exactly from rollups.
+ */
+@Component
+@RequiredArgsConstructor
+public class TopHitTracker {
+    private static final long HOUR_MILLIS = Duration.ofHours(1).toMillis();
+
+    private final HitRollupRepository rollupRepository;
+    private final HitRollupService rollupService;
+    private final Map<Long, SpaceSaving<TopKey>> summaries = new ConcurrentHashMap<>();
+
+    @Value("${statistics.top.capacity:1000}")
+    private int capacity;
+
+    @Value("${statistics.top.window:7d}")
+    private Duration window;
+
+    @PostConstruct
+    public void rebuild() {
+        LocalDateTime to = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusHours(1);
+        LocalDateTime from = to.minus(window);
+
+        rollupRepository.forEachBucket(RollupGranularity.HOUR, from, to, (appId, uriId, bucket, hits) ->
+                offer(toEpochMillis(bucket) / HOUR_MILLIS, new TopKey(appId, uriId), hits));
+    }
+
+    public void record(Collection<Hit> hits) {
+        long oldestHour = oldestHour();
+
+        hits.stream()
+                .filter(hit -> hit.getTimestamp() / HOUR_MILLIS >= oldestHour)
+                .collect(Collectors.groupingBy(hit -> hit.getTimestamp() / HOUR_MILLIS,
+                        Collectors.groupingBy(hit -> new TopKey(hit.getAppId(), hit.getUriId()), Collectors.counting())))
+                .forEach((hour, counts) -> counts.forEach((key, count) -> offer(hour, key, count)));
+    }
+
+    /**
+     * Returns the {@code n} pairs with the highest estimated hits among the uris accepted by the filter,
+     * or nothing if the range starts before the window. Each estimate carries its relative overestimation bound.
+     */
+    public Optional<List<HitCount>> getTop(LocalDateTime start, LocalDateTime end, int n, IntPredicate uriFilter) {
+        long fromHour = Math.floorDiv(toEpochMillis(start) + HOUR_MILLIS - 1, HOUR_MILLIS);
+        // Hours after the current one hold no hits yet; the tail rollup query covers them.
+        long toHour = Math.min(Math.floorDiv(toEpochMillis(end), HOUR_MILLIS),
+                toEpochMillis(LocalDateTime.now()) / HOUR_MILLIS + 1);
+
+        if (fromHour < oldestHour()) {
+            return Optional.empty();
+        }
+
+        Map<TopKey, long[]> estimates = new HashMap<>();
+        long baseline = 0;
+
+        for (long hour = fromHour; hour < toHour; hour++) {
+            SpaceSaving<TopKey> summary = summaries.get(hour);
+
+            if (summary == null) {
+                continue;
+            }
+
+            synchronized (summary) {
+                long minCount = summary.getMinCount();
+                baseline += minCount;
+
+                summary.forEach((key, count, error) -> {
+                    long[] estimate = estimates.computeIfAbsent(key, k -> new long[2]);
+                    estimate[0] += count - minCount;
+                    estimate[1] += error - minCount;
+                });
+            }
+        }
+
+        if (fromHour >= toHour) {
+            addExact(estimates, rollupService.getStats(start, end, null));
+        } else {
+            LocalDateTime hourFrom = toLocalHour(fromHour);
+            LocalDateTime hourTo = toLocalHour(toHour);
+
+            if (start.isBefore(hourFrom)) {
+                addExact(estimates, rollupService.getStats(start, hourFrom.minusNanos(1), null));
+            }
+
+            addExact(estimates, rollupService.getStats(hourTo, end, null));
+        }
+
+        // The filter may resolve uri names from the database, so it only runs once no summary is locked.
+        estimates.keySet().removeIf(key -> !uriFilter.test(key.getUriId()));
+
+        long untracked = baseline;
+
+        return Optional.of(estimates.entrySet().stream()
+                .map(e -> toHitCount(e.getKey(), e.getValue()[0] + untracked, e.getValue()[1] + untracked))
+                .sorted(Comparator.comparing(HitCount::getHits).reversed())
+                .limit(n)
+                .collect(Collectors.toList()));
+    }
+
+    @Scheduled(fixedDelayString = "${statistics.top.sweep-interval:600000}")
+    public void sweep() {
+        long oldestHour = oldestHour();
+
+        summaries.keySet().removeIf(hour -> hour < oldestHour);
+    }
+
+    private void offer(long hour, TopKey key, long hits) {
+        SpaceSaving<TopKey> summary = summaries.computeIfAbsent(hour, h -> new SpaceSaving<>(capacity));
+
+        synchronized (summary) {
+            summary.offer(key, hits);
+        }
+    }
+
+    private void addExact(Map<TopKey, long[]> estimates, List<HitCount> counts) {
+        counts.forEach(count -> estimates.computeIfAbsent(new TopKey(count.getAppId(), count.getUriId()),
+                k -> new long[2])[0] += count.getHits());
+    }
+
+    private long oldestHour() {
+        return toEpochMillis(LocalDateTime.now()) / HOUR_MILLIS - window.toHours() + 1;
+    }
+
+    private static LocalDateTime toLocalHour(long hour) {
+        return toLocalDateTime(hour * HOUR_MILLIS);
+    }
+
+    private static HitCount toHitCount(TopKey key, long hits, long error) {
+        return new HitCount(key.getAppId(), key.getUriId(), hits, error == 0 ? null : (double) error / hits);
+    }
+
+    @lombok.Value
+    private static class TopKey {
+        int appId;
+        int uriId;
+    }
+}
@@ -0,0 +1,34 @@
+package ru.practicum.statistics.service;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Uri patterns accepted by the stats queries: {@code *} matches any sequence of characters,
+ * e.g. {@code /events/*}. Everything else matches literally.
+ */
+@UtilityClass
+public class UriPattern {
+    private static final char WILDCARD = '*';
+
+    public static boolean isPattern(String uri) {
+        return uri.indexOf(WILDCARD) >= 0;
+    }
+
+    public static String toLikePattern(String pattern) {
+        StringBuilder like = new StringBuilder(pattern.length() + 4);
+
+        for (char c : pattern.toCharArray()) {
+            if (c == WILDCARD) {
+                like.append('%');
+            } else {
+                if (c == '%' || c == '_' || c == '\\') {
+                    like.append('\\');
+                }
+
+                like.append(c);
+            }
+        }
+
+        return like.toString();
+    }
+}
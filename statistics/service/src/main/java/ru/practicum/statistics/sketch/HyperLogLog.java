@@ -0,0 +1,107 @@
+package ru.practicum.statistics.sketch;
+
+import ru.practicum.statistics.hash.KeyHash;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog cardinality sketch with {@code 2^precision} one-byte registers.
+ * Not thread-safe: callers guard concurrent {@link #add} and {@link #merge} themselves.
+ */
+public class HyperLogLog {
+    private static final int MIN_PRECISION = 4;
+    private static final int MAX_PRECISION = 16;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION);
+        }
+
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public static HyperLogLog fromBytes(byte[] registers) {
+        HyperLogLog sketch = new HyperLogLog(Integer.numberOfTrailingZeros(registers.length));
+        System.arraycopy(registers, 0, sketch.registers, 0, registers.length);
+
+        return sketch;
+    }
+
+    public void add(String value) {
+        add(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void add(byte[] value) {
+        long hash = KeyHash.hash(value);
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << precision), Long.SIZE - precision) + 1;
+
+        if (registers[index] < rank) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    public void merge(HyperLogLog other) {
+        if (other.registers.length != registers.length) {
+            throw new IllegalArgumentException("Cannot merge sketches of different precision");
+        }
+
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] < other.registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+
+            if (register == 0) {
+                zeros++;
+            }
+        }
+
+        double estimate = alpha(m) * m * m / sum;
+
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+
+        return Math.round(estimate);
+    }
+
+    public double relativeError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public byte[] toBytes() {
+        return Arrays.copyOf(registers, registers.length);
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+}
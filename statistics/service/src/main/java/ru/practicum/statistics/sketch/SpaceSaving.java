@@ -0,0 +1,137 @@
+package ru.practicum.statistics.sketch;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Space-Saving heavy-hitters summary tracking at most {@code capacity} items.
+ * A new item replaces the item with the smallest count and inherits that count as its error, so every
+ * tracked count overestimates the true one by at most its error, and any item with a true count above
+ * {@link #getMinCount()} is tracked. Counters are kept in an indexed min-heap.
+ * Not thread-safe: callers guard concurrent {@link #offer} themselves.
+ */
+public class SpaceSaving<K> {
+    private final int capacity;
+    private final Object[] items;
+    private final long[] counts;
+    private final long[] errors;
+    private final Map<K, Integer> positions;
+    private int size;
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+
+        this.capacity = capacity;
+        this.items = new Object[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.positions = new HashMap<>(capacity * 2);
+    }
+
+    public void offer(K item, long count) {
+        Integer position = positions.get(item);
+
+        if (position != null) {
+            counts[position] += count;
+            siftDown(position);
+        } else if (size < capacity) {
+            set(size, item, count, 0);
+            siftUp(size++);
+        } else {
+            positions.remove(item(0));
+            set(0, item, counts[0] + count, counts[0]);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Upper bound of the count of any untracked item: zero until the summary is full.
+     */
+    public long getMinCount() {
+        return size < capacity ? 0 : counts[0];
+    }
+
+    public long getCount(K item) {
+        Integer position = positions.get(item);
+
+        return position == null ? 0 : counts[position];
+    }
+
+    public boolean contains(K item) {
+        return positions.containsKey(item);
+    }
+
+    public void forEach(EntryCallback<K> callback) {
+        for (int i = 0; i < size; i++) {
+            callback.accept(item(i), counts[i], errors[i]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private K item(int position) {
+        return (K) items[position];
+    }
+
+    private void set(int position, K item, long count, long error) {
+        items[position] = item;
+        counts[position] = count;
+        errors[position] = error;
+        positions.put(item, position);
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+
+            if (counts[parent] <= counts[position]) {
+                return;
+            }
+
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int smallest = position;
+            int left = position * 2 + 1;
+            int right = left + 1;
+
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+
+            if (smallest == position) {
+                return;
+            }
+
+            swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        K item = item(a);
+        long count = counts[a];
+        long error = errors[a];
+
+        set(a, item(b), counts[b], errors[b]);
+        set(b, item, count, error);
+    }
+
+    @FunctionalInterface
+    public interface EntryCallback<K> {
+        void accept(K item, long count, long error);
+    }
+}
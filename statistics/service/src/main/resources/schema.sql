@@ -1,11 +1,239 @@
-DROP TABLE IF EXISTS hit CASCADE;
+CREATE TABLE IF NOT EXISTS app
+(
+    id   INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    name VARCHAR(255)                             NOT NULL,
+    CONSTRAINT PK_APP PRIMARY KEY (id),
+    CONSTRAINT UQ_APP_NAME UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS uri
+(
+    id    INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    value VARCHAR(255)                             NOT NULL,
+    CONSTRAINT PK_URI PRIMARY KEY (id),
+    CONSTRAINT UQ_URI_VALUE UNIQUE (value)
+);
+
+-- Serves LIKE 'prefix%' scans whatever the database collation is.
+CREATE INDEX IF NOT EXISTS IX_URI_VALUE_PATTERN ON uri (value text_pattern_ops);
+
+CREATE TABLE IF NOT EXISTS entity_type
+(
+    id   INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    name VARCHAR(64)                              NOT NULL,
+    CONSTRAINT PK_ENTITY_TYPE PRIMARY KEY (id),
+    CONSTRAINT UQ_ENTITY_TYPE_NAME UNIQUE (name)
+);
+
+-- A hit table of the original layout (app, uri and ip as text, one table) is moved aside here
+-- and copied into the tables below at the end of this script.
+DO '
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = current_schema() AND table_name = ''hit'' AND column_name = ''app'') THEN
+        ALTER TABLE hit RENAME TO hit_legacy;
+        ALTER TABLE hit_legacy RENAME CONSTRAINT pk_hit TO pk_hit_legacy;
+    END IF;
+END';
+
+CREATE SEQUENCE IF NOT EXISTS hit_seq INCREMENT BY 50;
 
 CREATE TABLE IF NOT EXISTS hit
 (
-    id        BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
-    app       VARCHAR(255)                            NOT NULL,
-    uri       VARCHAR(255)                            NOT NULL,
-    ip        VARCHAR(255)                            NOT NULL,
-    timestamp TIMESTAMP WITHOUT TIME ZONE             NOT NULL,
-    CONSTRAINT PK_HIT PRIMARY KEY (id)
-);
\ No newline at end of file
+    id             BIGINT DEFAULT nextval('hit_seq') NOT NULL,
+    app_id         INTEGER                           NOT NULL,
+    uri_id         INTEGER                           NOT NULL,
+    ip             BYTEA                             NOT NULL,
+    timestamp      BIGINT                            NOT NULL,
+    entity_type_id INTEGER,
+    entity_id      BIGINT,
+    repeats        INTEGER DEFAULT 1                 NOT NULL,
+    deduplicated   BOOLEAN DEFAULT FALSE             NOT NULL,
+    CONSTRAINT PK_HIT PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+CREATE TABLE IF NOT EXISTS hit_default PARTITION OF hit DEFAULT;
+
+CREATE INDEX IF NOT EXISTS IX_HIT_TIMESTAMP ON hit (timestamp);
+
+CREATE INDEX IF NOT EXISTS IX_HIT_ENTITY ON hit (entity_type_id, entity_id, timestamp) WHERE entity_id IS NOT NULL;
+
+CREATE TABLE IF NOT EXISTS hit_rollup_minute
+(
+    app_id INTEGER                     NOT NULL,
+    uri_id INTEGER                     NOT NULL,
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    hits   BIGINT                      NOT NULL,
+    CONSTRAINT PK_HIT_ROLLUP_MINUTE PRIMARY KEY (app_id, uri_id, bucket)
+);
+
+CREATE INDEX IF NOT EXISTS IX_HIT_ROLLUP_MINUTE_BUCKET ON hit_rollup_minute (bucket);
+
+CREATE TABLE IF NOT EXISTS hit_rollup_hour
+(
+    app_id INTEGER                     NOT NULL,
+    uri_id INTEGER                     NOT NULL,
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    hits   BIGINT                      NOT NULL,
+    CONSTRAINT PK_HIT_ROLLUP_HOUR PRIMARY KEY (app_id, uri_id, bucket)
+);
+
+CREATE INDEX IF NOT EXISTS IX_HIT_ROLLUP_HOUR_BUCKET ON hit_rollup_hour (bucket);
+
+CREATE TABLE IF NOT EXISTS hit_sketch
+(
+    app_id    INTEGER                     NOT NULL,
+    uri_id    INTEGER                     NOT NULL,
+    bucket    TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    registers BYTEA                       NOT NULL,
+    CONSTRAINT PK_HIT_SKETCH PRIMARY KEY (app_id, uri_id, bucket)
+);
+
+CREATE INDEX IF NOT EXISTS IX_HIT_SKETCH_BUCKET ON hit_sketch (bucket);
+
+-- First hit of every ip on a uri per day; exact unique counts read whole days from here.
+CREATE TABLE IF NOT EXISTS hit_visitor
+(
+    app_id     INTEGER NOT NULL,
+    uri_id     INTEGER NOT NULL,
+    day        DATE    NOT NULL,
+    ip         BYTEA   NOT NULL,
+    first_seen BIGINT  NOT NULL,
+    CONSTRAINT PK_HIT_VISITOR PRIMARY KEY (uri_id, day, app_id, ip)
+);
+
+CREATE INDEX IF NOT EXISTS IX_HIT_VISITOR_DAY ON hit_visitor (day);
+
+-- Entity views of compacted days, one row per (entity, day, ip) with its hit count.
+CREATE TABLE IF NOT EXISTS hit_entity_view
+(
+    entity_type_id INTEGER NOT NULL,
+    entity_id      BIGINT  NOT NULL,
+    day            DATE    NOT NULL,
+    ip             BYTEA   NOT NULL,
+    hits           BIGINT  NOT NULL,
+    CONSTRAINT PK_HIT_ENTITY_VIEW PRIMARY KEY (entity_type_id, entity_id, day, ip)
+);
+
+-- Raw hits before compacted_before (epoch millis) have been deleted by compaction.
+CREATE TABLE IF NOT EXISTS hit_compaction_watermark
+(
+    id               INTEGER NOT NULL,
+    compacted_before BIGINT  NOT NULL,
+    CONSTRAINT PK_HIT_COMPACTION_WATERMARK PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS hit_journal_checkpoint
+(
+    id      INTEGER NOT NULL,
+    segment BIGINT  NOT NULL,
+    CONSTRAINT PK_HIT_JOURNAL_CHECKPOINT PRIMARY KEY (id)
+);
+
+-- Hits older than sketch_from (epoch millis) have no hit_sketch rows yet; they are sketched on the next startup.
+CREATE TABLE IF NOT EXISTS hit_sketch_backfill
+(
+    id          INTEGER NOT NULL,
+    sketch_from BIGINT  NOT NULL,
+    CONSTRAINT PK_HIT_SKETCH_BACKFILL PRIMARY KEY (id)
+);
+
+-- Encodes a text ip like HitCodec.encodeIp: 16 bytes, IPv4 as IPv4-mapped IPv6. Invalid ips give NULL.
+CREATE OR REPLACE FUNCTION pg_temp.encode_legacy_ip(ip TEXT) RETURNS BYTEA AS '
+DECLARE
+    address INET;
+BEGIN
+    address := ip::INET;
+
+    IF family(address) = 4 THEN
+        RETURN decode(''00000000000000000000ffff'', ''hex'') || substring(inet_send(address) FROM 5);
+    END IF;
+
+    RETURN substring(inet_send(address) FROM 5);
+EXCEPTION
+    WHEN invalid_text_representation THEN
+        RETURN NULL;
+END' LANGUAGE plpgsql;
+
+-- Copies a legacy hit table moved aside above into the dictionaries, hit, the rollups and hit_visitor,
+-- then drops it, all in one transaction.
+DO '
+DECLARE
+    skipped BIGINT;
+    migrated_from BIGINT;
+BEGIN
+    IF to_regclass(''hit_legacy'') IS NULL THEN
+        RETURN;
+    END IF;
+
+    INSERT INTO app (name) SELECT DISTINCT app FROM hit_legacy ON CONFLICT (name) DO NOTHING;
+    INSERT INTO uri (value) SELECT DISTINCT uri FROM hit_legacy ON CONFLICT (value) DO NOTHING;
+
+    CREATE TEMPORARY TABLE hit_migrated ON COMMIT DROP AS
+    SELECT a.id                                         AS app_id,
+           u.id                                         AS uri_id,
+           pg_temp.encode_legacy_ip(l.ip)               AS ip,
+           l.timestamp                                  AS at,
+           (EXTRACT(EPOCH FROM l.timestamp) * 1000)::BIGINT AS timestamp
+    FROM hit_legacy l
+             JOIN app a ON a.name = l.app
+             JOIN uri u ON u.value = l.uri;
+
+    DELETE FROM hit_migrated WHERE ip IS NULL;
+    GET DIAGNOSTICS skipped = ROW_COUNT;
+
+    IF skipped > 0 THEN
+        RAISE WARNING ''Skipped % legacy hits with an invalid ip'', skipped;
+    END IF;
+
+    INSERT INTO hit (app_id, uri_id, ip, timestamp)
+    SELECT app_id, uri_id, ip, timestamp FROM hit_migrated;
+
+    INSERT INTO hit_rollup_minute (app_id, uri_id, bucket, hits)
+    SELECT app_id, uri_id, date_trunc(''minute'', at), COUNT(*) FROM hit_migrated GROUP BY 1, 2, 3
+    ON CONFLICT (app_id, uri_id, bucket) DO UPDATE SET hits = hit_rollup_minute.hits + EXCLUDED.hits;
+
+    INSERT INTO hit_rollup_hour (app_id, uri_id, bucket, hits)
+    SELECT app_id, uri_id, date_trunc(''hour'', at), COUNT(*) FROM hit_migrated GROUP BY 1, 2, 3
+    ON CONFLICT (app_id, uri_id, bucket) DO UPDATE SET hits = hit_rollup_hour.hits + EXCLUDED.hits;
+
+    INSERT INTO hit_visitor (app_id, uri_id, day, ip, first_seen)
+    SELECT app_id, uri_id, at::DATE, ip, MIN(timestamp) FROM hit_migrated GROUP BY 1, 2, 3, 4
+    ON CONFLICT (app_id, uri_id, day, ip) DO UPDATE SET first_seen = LEAST(hit_visitor.first_seen, EXCLUDED.first_seen);
+
+    SELECT MIN(timestamp) INTO migrated_from FROM hit_migrated;
+
+    IF migrated_from IS NOT NULL THEN
+        INSERT INTO hit_sketch_backfill (id, sketch_from) VALUES (1, migrated_from)
+        ON CONFLICT (id) DO UPDATE SET sketch_from = LEAST(hit_sketch_backfill.sketch_from, EXCLUDED.sketch_from);
+    END IF;
+
+    DROP TABLE hit_legacy;
+END';
+
+-- Sketches written while the key hash sign-extended bytes are not comparable with newer ones. Those of hours
+-- that still have raw hits are dropped and sketched again on startup; older ones are kept as they are.
+CREATE TABLE IF NOT EXISTS hit_sketch_hash
+(
+    version INTEGER NOT NULL,
+    CONSTRAINT PK_HIT_SKETCH_HASH PRIMARY KEY (version)
+);
+
+DO '
+DECLARE
+    raw_from BIGINT;
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM hit_sketch_hash WHERE version = 2) THEN
+        SELECT MIN(timestamp) INTO raw_from FROM hit;
+
+        IF raw_from IS NOT NULL THEN
+            DELETE FROM hit_sketch
+            WHERE bucket >= to_timestamp((raw_from - raw_from % 3600000) / 1000) AT TIME ZONE ''UTC'';
+
+            INSERT INTO hit_sketch_backfill (id, sketch_from) VALUES (1, raw_from)
+            ON CONFLICT (id) DO UPDATE SET sketch_from = LEAST(hit_sketch_backfill.sketch_from, EXCLUDED.sketch_from);
+        END IF;
+
+        INSERT INTO hit_sketch_hash (version) VALUES (2);
+    END IF;
+END';
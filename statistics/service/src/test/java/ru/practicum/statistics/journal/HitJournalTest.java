@@ -0,0 +1,202 @@
+package ru.practicum.statistics.journal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.practicum.statistics.config.HitJournalProperties;
+import ru.practicum.statistics.entity.Hit;
+import ru.practicum.statistics.repository.HitCount;
+import ru.practicum.statistics.repository.HitJournalCheckpointRepository;
+import ru.practicum.statistics.service.HitWriter;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+import static ru.practicum.statistics.mapper.HitCodec.encodeIp;
+import static ru.practicum.statistics.mapper.HitCodec.toEpochMillis;
+
+class HitJournalTest {
+    private static final long T0 = toEpochMillis(LocalDateTime.of(2022, 11, 6, 12, 0));
+    private static final int SEGMENT_SIZE = JournalSegment.RECORD_SIZE * 10;
+
+    @TempDir
+    Path directory;
+
+    private final HitJournalProperties properties = new HitJournalProperties();
+    private final HitJournalCheckpointRepository checkpointRepository = mock(HitJournalCheckpointRepository.class);
+    private final HitWriter hitWriter = mock(HitWriter.class);
+
+    @BeforeEach
+    void setUp() {
+        properties.setEnabled(true);
+        properties.setDirectory(directory.toString());
+        properties.setSegmentSize(SEGMENT_SIZE);
+        properties.setFsync(false);
+        when(checkpointRepository.getLoadedSegment()).thenReturn(-1L);
+    }
+
+    @Test
+    void deletesSegmentsUpToTheCheckpointAndKeepsTheRest() {
+        writeSegment(1, hit(1, T0), hit(1, T0 + 1));
+        writeSegment(2, hit(2, T0), hit(2, T0 + 1), hit(2, T0 + 2));
+        when(checkpointRepository.getLoadedSegment()).thenReturn(1L);
+
+        HitJournal journal = recover();
+
+        assertFalse(Files.exists(segmentPath(1)));
+        assertTrue(Files.exists(segmentPath(2)));
+        assertTrue(Files.exists(segmentPath(3)));
+        assertEquals(List.of(new HitCount(1, 2, 3L)), journal.getPendingCounts(T0, T0 + 10, null));
+    }
+
+    @Test
+    void loadsRecoveredSegmentsOnceAndAdvancesTheCheckpoint() {
+        writeSegment(1, hit(1, T0), hit(1, T0 + 1));
+        writeSegment(2, hit(2, T0));
+
+        HitJournal journal = recover();
+        journal.load();
+
+        ArgumentCaptor<List<Hit>> written = ArgumentCaptor.forClass(List.class);
+        verify(hitWriter, times(2)).write(written.capture());
+        assertEquals(List.of(List.of(1, 1), List.of(2)), written.getAllValues().stream()
+                .map(hits -> hits.stream().map(Hit::getUriId).collect(Collectors.toList()))
+                .collect(Collectors.toList()));
+        verify(checkpointRepository).saveLoadedSegment(1);
+        verify(checkpointRepository).saveLoadedSegment(2);
+        assertFalse(Files.exists(segmentPath(1)));
+        assertFalse(Files.exists(segmentPath(2)));
+        assertTrue(journal.getPendingCounts(T0, T0 + 10, null).isEmpty());
+
+        journal.load();
+
+        verify(hitWriter, times(2)).write(anyList());
+    }
+
+    @Test
+    void recoversTheCommittedRecordsOfASegmentWithATornRecord() throws IOException {
+        writeSegment(1, hit(1, T0), hit(1, T0 + 1), hit(1, T0 + 2), hit(1, T0 + 3));
+        clearCommitMarker(1, 3);
+
+        HitJournal journal = recover();
+
+        assertEquals(List.of(new HitCount(1, 1, 3L)), journal.getPendingCounts(T0, T0 + 10, null));
+
+        journal.load();
+
+        ArgumentCaptor<List<Hit>> written = ArgumentCaptor.forClass(List.class);
+        verify(hitWriter).write(written.capture());
+        assertEquals(List.of(T0, T0 + 1, T0 + 2), written.getValue().stream()
+                .map(Hit::getTimestamp)
+                .collect(Collectors.toList()));
+        verify(checkpointRepository).saveLoadedSegment(1);
+    }
+
+    @Test
+    void stopsAtARecordWithABadChecksum() throws IOException {
+        writeSegment(1, hit(1, T0), hit(1, T0 + 1), hit(1, T0 + 2));
+
+        try (RandomAccessFile file = new RandomAccessFile(segmentPath(1).toFile(), "rw")) {
+            long payload = JournalSegment.RECORD_SIZE + 1;
+            file.seek(payload);
+            int appId = file.readInt();
+            file.seek(payload);
+            file.writeInt(appId + 1);
+        }
+
+        HitJournal journal = recover();
+
+        assertEquals(List.of(new HitCount(1, 1, 1L)), journal.getPendingCounts(T0, T0 + 10, null));
+    }
+
+    @Test
+    void recoversHitsAppendedBeforeARestartThatWereNotLoaded() {
+        HitJournal journal = recover();
+        journal.append(List.of(hit(1, T0), hit(2, T0 + 1)));
+        journal.shutdown();
+
+        HitJournal restarted = recover();
+
+        assertEquals(List.of(new HitCount(1, 1, 1L), new HitCount(1, 2, 1L)),
+                restarted.getPendingCounts(T0, T0 + 10, null).stream()
+                        .sorted(Comparator.comparing(HitCount::getUriId))
+                        .collect(Collectors.toList()));
+        assertTrue(Files.exists(segmentPath(0)));
+        assertTrue(Files.exists(segmentPath(1)));
+        verify(hitWriter, never()).write(anyList());
+        verify(checkpointRepository, never()).saveLoadedSegment(anyLong());
+    }
+
+    @Test
+    void keepsASegmentWhoseLoadFailedForTheNextAttempt() {
+        writeSegment(1, hit(1, T0));
+        doThrow(new IllegalStateException("database is down")).doNothing().when(hitWriter).write(anyList());
+
+        HitJournal journal = recover();
+
+        assertThrows(IllegalStateException.class, journal::load);
+        assertTrue(Files.exists(segmentPath(1)));
+        assertEquals(List.of(new HitCount(1, 1, 1L)), journal.getPendingCounts(T0, T0 + 10, null));
+
+        journal.load();
+
+        verify(checkpointRepository).saveLoadedSegment(1);
+        assertFalse(Files.exists(segmentPath(1)));
+        assertTrue(journal.getPendingCounts(T0, T0 + 10, null).isEmpty());
+    }
+
+    private HitJournal recover() {
+        HitJournal journal = new HitJournal(properties,
+                checkpointRepository,
+                hitWriter,
+                mock(PlatformTransactionManager.class));
+        journal.recover();
+
+        return journal;
+    }
+
+    private void writeSegment(long id, Hit... hits) {
+        JournalSegment segment = JournalSegment.create(directory, id, SEGMENT_SIZE);
+
+        for (Hit hit : hits) {
+            assertTrue(segment.append(hit));
+        }
+
+        segment.force();
+    }
+
+    /**
+     * Leaves the record as if the process died after writing its fields but before its commit marker.
+     */
+    private void clearCommitMarker(long id, int record) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segmentPath(id).toFile(), "rw")) {
+            file.seek((long) record * JournalSegment.RECORD_SIZE);
+            file.writeByte(0);
+        }
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%020d%s", id, JournalSegment.SUFFIX));
+    }
+
+    private static Hit hit(int uriId, long timestamp) {
+        return Hit.builder()
+                .appId(1)
+                .uriId(uriId)
+                .ip(encodeIp("10.0.0.1"))
+                .timestamp(timestamp)
+                .build();
+    }
+}
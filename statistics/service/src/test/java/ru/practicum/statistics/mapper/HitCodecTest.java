@@ -0,0 +1,58 @@
+package ru.practicum.statistics.mapper;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HitCodecTest {
+
+    @Test
+    void storesIpv4AsMappedIpv6AndDecodesItBack() {
+        for (String ip : List.of("0.0.0.0", "10.0.0.1", "192.168.1.254", "255.255.255.255")) {
+            byte[] encoded = HitCodec.encodeIp(ip);
+
+            assertEquals(16, encoded.length);
+            assertEquals((byte) 0xff, encoded[10]);
+            assertEquals((byte) 0xff, encoded[11]);
+            assertEquals(ip, HitCodec.decodeIp(encoded));
+        }
+    }
+
+    @Test
+    void storesIpv6AsSixteenBytesAndDecodesItBack() {
+        for (String ip : List.of("2001:db8::1", "::1", "fe80::1ff:fe23:4567:890a", "2001:db8:0:0:0:0:2:1")) {
+            byte[] encoded = HitCodec.encodeIp(ip);
+
+            assertEquals(16, encoded.length);
+            assertArrayEquals(encoded, HitCodec.encodeIp(HitCodec.decodeIp(encoded)));
+        }
+
+        assertEquals("2001:db8:0:0:0:0:0:1", HitCodec.decodeIp(HitCodec.encodeIp("2001:db8::1")));
+    }
+
+    @Test
+    void storesAnIpv4MappedLiteralLikeThePlainAddress() {
+        assertArrayEquals(HitCodec.encodeIp("10.0.0.1"), HitCodec.encodeIp("::ffff:10.0.0.1"));
+        assertEquals("10.0.0.1", HitCodec.decodeIp(HitCodec.encodeIp("::ffff:10.0.0.1")));
+    }
+
+    @Test
+    void rejectsInvalidAddresses() {
+        for (String ip : List.of("", "1.2.3", "1.2.3.4.5", "256.1.1.1", "-1.2.3.4", "+1.2.3.4", "1..2.3",
+                "a.b.c.d", " 1.2.3.4", "localhost", "2001:db8::g", "1:2:3:4:5:6:7:8:9", ":::")) {
+            assertFalse(HitCodec.isValidIp(ip), ip);
+            assertThrows(IllegalArgumentException.class, () -> HitCodec.encodeIp(ip), ip);
+        }
+    }
+
+    @Test
+    void convertsTimestampsWithoutShiftingThem() {
+        LocalDateTime timestamp = LocalDateTime.of(2022, 11, 6, 23, 59, 59, 123_000_000);
+
+        assertEquals(timestamp, HitCodec.toLocalDateTime(HitCodec.toEpochMillis(timestamp)));
+        assertEquals(0, HitCodec.toEpochMillis(LocalDateTime.of(1970, 1, 1, 0, 0)));
+    }
+}
@@ -0,0 +1,138 @@
+package ru.practicum.statistics.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.practicum.statistics.config.HitDedupProperties;
+import ru.practicum.statistics.entity.Hit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static ru.practicum.statistics.mapper.HitCodec.encodeIp;
+import static ru.practicum.statistics.mapper.HitCodec.toEpochMillis;
+
+class HitDeduplicatorTest {
+    private static final long T0 = toEpochMillis(LocalDateTime.of(2022, 11, 6, 12, 0));
+    private static final long SECOND = Duration.ofSeconds(1).toMillis();
+    private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+
+    private final HitDedupProperties properties = new HitDedupProperties();
+    private final HitVisitorService visitorService = mock(HitVisitorService.class);
+    private final HitSketchService sketchService = mock(HitSketchService.class);
+    private final EntityManager entityManager = mock(EntityManager.class);
+    private final List<Hit> stored = new ArrayList<>();
+    private HitDeduplicator deduplicator;
+
+    @BeforeEach
+    void setUp() {
+        properties.setEnabled(true);
+        properties.setWindow(Duration.ofMinutes(30));
+        doAnswer(invocation -> stored.add(invocation.getArgument(0))).when(entityManager).persist(any());
+        deduplicator = new HitDeduplicator(properties,
+                visitorService,
+                sketchService,
+                entityManager,
+                mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void passesEveryHitThroughWhenDisabled() {
+        properties.setEnabled(false);
+        List<Hit> hits = List.of(hit("10.0.0.1", T0), hit("10.0.0.1", T0 + SECOND));
+
+        assertEquals(hits, deduplicator.filter(hits));
+    }
+
+    @Test
+    void storesOnlyTheFirstHitOfAKeyWithinTheWindow() {
+        Hit first = hit("10.0.0.1", T0);
+        Hit otherIp = hit("10.0.0.2", T0 + SECOND);
+
+        List<Hit> rows = deduplicator.filter(List.of(first,
+                hit("10.0.0.1", T0 + SECOND),
+                otherIp,
+                hit("10.0.0.1", T0 + 29 * MINUTE)));
+
+        assertEquals(List.of(first, otherIp), rows);
+    }
+
+    @Test
+    void startsANewWindowOnceTheWindowHasPassed() {
+        Hit late = hit("10.0.0.1", T0 + 30 * MINUTE);
+
+        deduplicator.filter(List.of(hit("10.0.0.1", T0)));
+
+        assertEquals(List.of(late), deduplicator.filter(List.of(late)));
+    }
+
+    @Test
+    void storesTheRepeatsOfEachMinuteAsOneRow() {
+        deduplicator.filter(List.of(hit("10.0.0.1", T0),
+                hit("10.0.0.1", T0 + SECOND),
+                hit("10.0.0.1", T0 + 2 * SECOND),
+                hit("10.0.0.1", T0 + MINUTE + SECOND)));
+
+        assertTrue(stored.isEmpty());
+
+        deduplicator.shutdown();
+        stored.sort(Comparator.comparing(Hit::getTimestamp));
+
+        assertEquals(2, stored.size());
+        assertRepeats(stored.get(0), 2, T0 + 2 * SECOND);
+        assertRepeats(stored.get(1), 1, T0 + MINUTE + SECOND);
+        verify(visitorService).record(stored);
+        verify(sketchService).record(stored);
+    }
+
+    @Test
+    void keepsRowsThatFailedToStoreForTheNextFlush() {
+        doThrow(new PersistenceException("connection refused"))
+                .doAnswer(invocation -> stored.add(invocation.getArgument(0)))
+                .when(entityManager).persist(any());
+
+        deduplicator.filter(List.of(hit("10.0.0.1", T0), hit("10.0.0.1", T0 + SECOND)));
+        deduplicator.shutdown();
+
+        assertTrue(stored.isEmpty());
+
+        deduplicator.shutdown();
+
+        assertEquals(1, stored.size());
+        assertRepeats(stored.get(0), 1, T0 + SECOND);
+    }
+
+    @Test
+    void storesHitsOfKeysBeyondTheLimitAsRawRows() {
+        properties.setMaximumKeys(1);
+        List<Hit> otherKey = List.of(hit("10.0.0.2", T0), hit("10.0.0.2", T0 + SECOND));
+
+        deduplicator.filter(List.of(hit("10.0.0.1", T0)));
+
+        assertEquals(otherKey, deduplicator.filter(otherKey));
+    }
+
+    private static void assertRepeats(Hit row, int repeats, long timestamp) {
+        assertTrue(row.getDeduplicated());
+        assertNull(row.getId());
+        assertEquals(repeats, row.getRepeats());
+        assertEquals(timestamp, row.getTimestamp());
+    }
+
+    private static Hit hit(String ip, long timestamp) {
+        return Hit.builder()
+                .appId(1)
+                .uriId(1)
+                .ip(encodeIp(ip))
+                .timestamp(timestamp)
+                .build();
+    }
+}
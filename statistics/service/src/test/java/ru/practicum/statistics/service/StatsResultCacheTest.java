@@ -0,0 +1,142 @@
+package ru.practicum.statistics.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.statistics.config.StatsCacheProperties;
+import ru.practicum.statistics.dto.ResponseHitDto;
+import ru.practicum.statistics.dto.StatsPrecision;
+import ru.practicum.statistics.entity.Hit;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StatsResultCacheTest {
+    private static final LocalDateTime START = LocalDateTime.of(2022, 11, 1, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2022, 11, 2, 12, 30, 10);
+    private static final String EVENT_1 = "/events/1";
+    private static final String EVENT_2 = "/events/2";
+
+    private final StatsCacheProperties properties = new StatsCacheProperties();
+    private final HitDictionary dictionary = mock(HitDictionary.class);
+    private final AtomicInteger queries = new AtomicInteger();
+    private StatsResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        properties.setMaxStaleness(Duration.ZERO);
+        when(dictionary.findUriId(EVENT_1)).thenReturn(Optional.of(1));
+        when(dictionary.findUriId(EVENT_2)).thenReturn(Optional.of(2));
+        cache = new StatsResultCache(properties, dictionary, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void servesARepeatedQueryFromTheCache() {
+        get(END, List.of(EVENT_1, EVENT_2));
+        get(END, List.of(EVENT_2, EVENT_1, EVENT_1));
+
+        assertEquals(1, queries.get());
+    }
+
+    @Test
+    void sharesAnEntryBetweenEndsOfTheSameBucket() {
+        get(END, List.of(EVENT_1));
+        get(END.plusSeconds(40), List.of(EVENT_1));
+        get(END.plusMinutes(1), List.of(EVENT_1));
+
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    void recomputesAnEntryOnceOneOfItsUrisIsWritten() {
+        get(END, List.of(EVENT_1));
+        cache.recordWrites(List.of(hit(1)));
+        get(END, List.of(EVENT_1));
+
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    void keepsAnEntryWhenOnlyOtherUrisAreWritten() {
+        get(END, List.of(EVENT_1));
+        cache.recordWrites(List.of(hit(2)));
+        get(END, List.of(EVENT_1));
+
+        assertEquals(1, queries.get());
+    }
+
+    @Test
+    void recomputesAQueryOverAllUrisOnAnyWrite() {
+        get(END, null);
+        cache.recordWrites(List.of(hit(2)));
+        get(END, null);
+
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    void recomputesAPatternQueryOnAnyWrite() {
+        get(END, List.of("/events/*"));
+        cache.recordWrites(List.of(hit(3)));
+        get(END, List.of("/events/*"));
+
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    void servesADirtyEntryWithinTheAllowedStaleness() {
+        properties.setMaxStaleness(Duration.ofMinutes(1));
+
+        get(END, List.of(EVENT_1));
+        cache.recordWrites(List.of(hit(1)));
+        get(END, List.of(EVENT_1));
+
+        assertEquals(1, queries.get());
+    }
+
+    @Test
+    void treatsAResultAsDirtyIfAWriteLandedWhileItWasComputed() {
+        cache.get(START, END, List.of(EVENT_1), false, StatsPrecision.EXACT, () -> {
+            queries.incrementAndGet();
+            cache.recordWrites(List.of(hit(1)));
+            return List.of();
+        });
+        get(END, List.of(EVENT_1));
+
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    void runsEveryQueryWhenDisabled() {
+        properties.setEnabled(false);
+
+        get(END, List.of(EVENT_1));
+        get(END, List.of(EVENT_1));
+
+        assertEquals(2, queries.get());
+    }
+
+    private void get(LocalDateTime end, List<String> uris) {
+        Supplier<List<ResponseHitDto>> query = () -> {
+            queries.incrementAndGet();
+            return List.of(new ResponseHitDto("ewm-main-service", EVENT_1, 1L));
+        };
+
+        cache.get(START, end, uris, false, StatsPrecision.EXACT, query);
+    }
+
+    private static Hit hit(int uriId) {
+        return Hit.builder()
+                .appId(1)
+                .uriId(uriId)
+                .build();
+    }
+}
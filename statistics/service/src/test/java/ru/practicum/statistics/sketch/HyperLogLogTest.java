@@ -0,0 +1,98 @@
+package ru.practicum.statistics.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+    private static final int PRECISION = 12;
+
+    @Test
+    void estimatesStayWithinThreeStandardErrors() {
+        for (int cardinality : new int[]{100, 1_000, 10_000, 100_000, 1_000_000}) {
+            HyperLogLog sketch = sketchOf(0, cardinality);
+            double allowed = 3 * sketch.relativeError() * cardinality;
+
+            assertTrue(Math.abs(sketch.estimate() - cardinality) <= allowed,
+                    "estimate " + sketch.estimate() + " of " + cardinality + " distinct values");
+        }
+    }
+
+    @Test
+    void addingAValueAgainDoesNotChangeTheSketch() {
+        HyperLogLog sketch = sketchOf(0, 1_000);
+        byte[] registers = sketch.toBytes();
+
+        for (int i = 0; i < 1_000; i++) {
+            sketch.add(ip(i));
+        }
+
+        assertArrayEquals(registers, sketch.toBytes());
+    }
+
+    @Test
+    void mergeIsAssociativeAndEqualsTheSketchOfTheUnion() {
+        HyperLogLog left = sketchOf(0, 20_000);
+        left.merge(sketchOf(10_000, 40_000));
+        left.merge(sketchOf(30_000, 50_000));
+
+        HyperLogLog rightTail = sketchOf(10_000, 40_000);
+        rightTail.merge(sketchOf(30_000, 50_000));
+        HyperLogLog right = sketchOf(0, 20_000);
+        right.merge(rightTail);
+
+        assertArrayEquals(left.toBytes(), right.toBytes());
+        assertArrayEquals(sketchOf(0, 50_000).toBytes(), left.toBytes());
+    }
+
+    @Test
+    void mergeIsCommutativeAndIdempotent() {
+        HyperLogLog ab = sketchOf(0, 5_000);
+        ab.merge(sketchOf(5_000, 9_000));
+        HyperLogLog ba = sketchOf(5_000, 9_000);
+        ba.merge(sketchOf(0, 5_000));
+
+        assertArrayEquals(ab.toBytes(), ba.toBytes());
+
+        byte[] registers = ab.toBytes();
+        ab.merge(ba);
+
+        assertArrayEquals(registers, ab.toBytes());
+    }
+
+    @Test
+    void survivesARoundTripThroughBytes() {
+        HyperLogLog sketch = sketchOf(0, 3_000);
+        HyperLogLog copy = HyperLogLog.fromBytes(sketch.toBytes());
+
+        assertEquals(PRECISION, copy.getPrecision());
+        assertEquals(sketch.estimate(), copy.estimate());
+    }
+
+    @Test
+    void rejectsSketchesOfAnotherPrecision() {
+        HyperLogLog sketch = new HyperLogLog(PRECISION);
+
+        assertThrows(IllegalArgumentException.class, () -> sketch.merge(new HyperLogLog(PRECISION - 1)));
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(3));
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(17));
+    }
+
+    private static HyperLogLog sketchOf(int from, int to) {
+        HyperLogLog sketch = new HyperLogLog(PRECISION);
+
+        for (int i = from; i < to; i++) {
+            sketch.add(ip(i));
+        }
+
+        return sketch;
+    }
+
+    /**
+     * IPv4-mapped IPv6 bytes, as the service stores visitor addresses.
+     */
+    private static byte[] ip(int i) {
+        return new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xff, (byte) 0xff,
+                (byte) (i >>> 24), (byte) (i >>> 16), (byte) (i >>> 8), (byte) i};
+    }
+}
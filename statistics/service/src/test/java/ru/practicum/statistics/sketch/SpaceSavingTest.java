@@ -0,0 +1,113 @@
+package ru.practicum.statistics.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpaceSavingTest {
+    private static final int CAPACITY = 50;
+
+    @Test
+    void countsExactlyUntilFullThenReplacesTheSmallest() {
+        SpaceSaving<String> summary = new SpaceSaving<>(CAPACITY);
+
+        for (int i = 0; i < CAPACITY - 1; i++) {
+            summary.offer("uri" + i, i + 1);
+        }
+
+        assertEquals(0, summary.getMinCount());
+
+        summary.offer("uri" + (CAPACITY - 1), CAPACITY);
+
+        assertEquals(CAPACITY, summary.size());
+        assertEquals(1, summary.getMinCount());
+        summary.forEach((item, count, error) -> {
+            assertEquals(Long.parseLong(item.substring(3)) + 1, count);
+            assertEquals(0, error);
+        });
+
+        summary.offer("new", 1);
+
+        assertFalse(summary.contains("uri0"));
+        assertEquals(2, summary.getCount("new"));
+        assertEquals(1, errorOf(summary, "new"));
+    }
+
+    @Test
+    void boundsEveryTrackedCountByItsError() {
+        Map<Integer, Long> truth = new HashMap<>();
+        SpaceSaving<Integer> summary = offerSkewedStream(truth);
+
+        summary.forEach((item, count, error) -> {
+            long actual = truth.get(item);
+
+            assertTrue(count >= actual, item + " undercounted");
+            assertTrue(count - error <= actual, item + " overcounted by more than its error");
+            assertTrue(error <= summary.getMinCount());
+        });
+    }
+
+    @Test
+    void tracksEveryItemAboveTheMinimumCount() {
+        Map<Integer, Long> truth = new HashMap<>();
+        SpaceSaving<Integer> summary = offerSkewedStream(truth);
+        long total = truth.values().stream().mapToLong(Long::longValue).sum();
+
+        assertTrue(summary.getMinCount() <= total / CAPACITY);
+        truth.forEach((item, actual) -> {
+            if (actual > summary.getMinCount()) {
+                assertTrue(summary.contains(item), item + " with " + actual + " hits is not tracked");
+            }
+        });
+    }
+
+    @Test
+    void keepsTheTopItemsInOrder() {
+        Map<Integer, Long> truth = new HashMap<>();
+        SpaceSaving<Integer> summary = offerSkewedStream(truth);
+
+        for (int item = 0; item < 5; item++) {
+            long guaranteed = summary.getCount(item) - errorOf(summary, item);
+
+            assertTrue(guaranteed > summary.getCount(item + 1), "item " + item + " is not guaranteed above the next");
+        }
+    }
+
+    @Test
+    void rejectsANonPositiveCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new SpaceSaving<String>(0));
+    }
+
+    /**
+     * Offers 10 000 items in random order with Zipf-like counts: item i is offered about 20 000 / (i + 1) times.
+     */
+    private static SpaceSaving<Integer> offerSkewedStream(Map<Integer, Long> truth) {
+        SpaceSaving<Integer> summary = new SpaceSaving<>(CAPACITY);
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200_000; i++) {
+            int item = (int) Math.floor(Math.pow(10_000, random.nextDouble())) - 1;
+
+            summary.offer(item, 1);
+            truth.merge(item, 1L, Long::sum);
+        }
+
+        return summary;
+    }
+
+    private static <K> long errorOf(SpaceSaving<K> summary, K item) {
+        long[] error = new long[1];
+
+        summary.forEach((tracked, count, e) -> {
+            if (tracked.equals(item)) {
+                error[0] = e;
+            }
+        });
+
+        return error[0];
+    }
+}